@@ -0,0 +1,88 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+
+import frc.robot.Constants.DrivetrainConstants;
+import frc.robot.subsystems.DriveSubsystem;
+
+
+
+// drivetrain hot paths - odometry in periodic() and the joystick shaping in drive()
+//
+// the drivetrain creates real (simulated) hardware objects so the HAL has to be up before we build it
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DriveSubsystemBenchmark {
+
+    private DriveSubsystem m_drive;
+
+    private double m_stick;
+
+
+
+    @Setup
+    public void setup() {
+
+        HAL.initialize(500, 0);
+
+        m_drive = new DriveSubsystem();
+
+        StartupOrchestrator.awaitCompletion();          // the controllers get configured on other threads
+    }
+
+
+
+    // moves the stick input around so the shaping doesn't get constant folded
+
+    private double nextStick() {
+
+        m_stick += 0.013;
+
+        if (m_stick > 1.0) {
+            m_stick = -1.0;
+        }
+
+        return m_stick;
+    }
+
+
+
+    @Benchmark
+    public void periodic() {
+
+        m_drive.periodic();
+    }
+
+
+
+    @Benchmark
+    public void driveInputs() {
+
+        m_drive.driveInputs(nextStick(), -m_stick, m_stick * 0.5);
+    }
+
+
+
+    @Benchmark
+    public void driveCurvature() {
+
+        m_drive.drive(nextStick(), m_stick * 0.5, DrivetrainConstants.kDriveCurvature);
+    }
+
+
+
+    // just the math part of the arcade drive without the motor controller writes
+
+    @Benchmark
+    public DifferentialDrive.WheelSpeeds arcadeDriveIK() {
+
+        return DifferentialDrive.arcadeDriveIK(nextStick(), m_stick * 0.5, DrivetrainConstants.kDriveSqInputs);
+    }
+}
@@ -0,0 +1,87 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.wpi.first.hal.HAL;
+
+import frc.robot.Constants.LedConstants;
+import frc.robot.commands.LedBounceCommand;
+import frc.robot.subsystems.LedSubsystem;
+
+
+
+// LED pattern routines - these run every cycle while the default command or the shooting sequence is active
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LedBenchmark {
+
+    private LedSubsystem m_ledSubsystem;
+
+    private LedBounceCommand m_bounceCommand;
+
+
+
+    @Setup
+    public void setup() {
+
+        HAL.initialize(500, 0);
+
+        m_ledSubsystem  = new LedSubsystem();
+        m_bounceCommand = new LedBounceCommand(m_ledSubsystem);
+
+        StartupOrchestrator.awaitCompletion();          // the LED string gets set up on another thread
+
+        m_bounceCommand.initialize();
+    }
+
+
+
+    // note that the bounce only does real work every m_paceFactor calls - this is the average over all of them
+    // which is what it actually costs us per cycle
+
+    @Benchmark
+    public void bounceExecute() {
+
+        m_bounceCommand.execute();
+    }
+
+
+
+    @Benchmark
+    public void setAllLedsHSV() {
+
+        m_ledSubsystem.setAllLedsHSV(LedConstants.kLedGeneralBackgroundH,
+                                     LedConstants.kLedGeneralBackgroundS,
+                                     LedConstants.kLedGeneralBackgroundV);
+    }
+
+
+
+    @Benchmark
+    public void preShootSequence() {
+
+        m_ledSubsystem.ledPreShootSequence();
+    }
+
+
+
+    @Benchmark
+    public void postShootSequence() {
+
+        m_ledSubsystem.ledPostShootSequence();
+    }
+
+
+
+    // pushes the buffer out to the LED string - the MultiRateScheduler does this at kLedPeriod
+
+    @Benchmark
+    public void flush() {
+
+        m_ledSubsystem.flush();
+    }
+}
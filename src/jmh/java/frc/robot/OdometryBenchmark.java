@@ -0,0 +1,67 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.DifferentialDriveOdometry;
+
+
+
+// WPILib odometry vs our allocation-free version
+//
+// the gc.alloc.rate.norm column from the gc profiler should read (close to) 0 B/op for fastOdometry - that is
+// our check that the drivetrain's odometry path isn't creating garbage every cycle
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OdometryBenchmark {
+
+    private final DifferentialDriveOdometry m_odometry = new DifferentialDriveOdometry(new Rotation2d(), 0.0, 0.0,
+                                                                                       new Pose2d(1.35, 5.55, new Rotation2d(Math.PI)));
+
+    private final DifferentialOdometry m_fastOdometry = new DifferentialOdometry(0.0, 0.0, 0.0, 1.35, 5.55, Math.PI);
+
+    private final double[] m_pose = new double[3];
+
+    private double m_leftDistance;
+    private double m_rightDistance;
+    private double m_gyroRadians;
+
+
+
+    // a gentle arc - left side a little faster than the right
+
+    private void step() {
+
+        m_leftDistance  += 0.031;
+        m_rightDistance += 0.029;
+        m_gyroRadians   += 0.0035;
+    }
+
+
+
+    @Benchmark
+    public Pose2d wpilibOdometry() {
+
+        step();
+
+        return m_odometry.update(Rotation2d.fromRadians(m_gyroRadians), m_leftDistance, m_rightDistance);
+    }
+
+
+
+    @Benchmark
+    public double[] fastOdometry() {
+
+        step();
+
+        m_fastOdometry.update(m_gyroRadians, m_leftDistance, m_rightDistance);
+        m_fastOdometry.copyTo(m_pose);
+
+        return m_pose;
+    }
+}
@@ -0,0 +1,104 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.ShooterConstants;
+
+
+
+// range to speed / angle lookups - these get run every time we setup a shot
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UtilitiesBenchmark {
+
+    private static final int kNumOfRanges = 1024;
+
+    // same shape as the shooter speed table
+
+    private final double[][] m_table = { {4.0, 750}, {5.5, 1000}, {7.0, 1400}, {9.5, 1800}, {11.0, 2200}, {ShooterConstants.kMaxShootRange.in(Meters), 2500} };
+
+    private final InterpolatingTable m_interpolatingTable = new InterpolatingTable(m_table);
+
+    private InterpolatingTable m_largeInterpolatingTable;           // what we'd have with a properly calibrated table
+
+    private final ShotSolutionTable m_shotTable = new ShotSolutionTable(m_interpolatingTable, m_interpolatingTable);
+
+    private final double[] m_ranges = new double[kNumOfRanges];
+
+    private int m_rangeIndex;
+
+
+
+    @Setup
+    public void setup() {
+
+        // spread the ranges over the whole shootable band (and a little outside of it) so we hit every branch
+
+        double minRange = ShooterConstants.kMinShootRange.in(Meters) - 1.0;
+        double maxRange = ShooterConstants.kMaxShootRange.in(Meters) + 1.0;
+
+        for (int i = 0 ; i < kNumOfRanges ; i++) {
+            m_ranges[i] = minRange + (maxRange - minRange) * i / (kNumOfRanges - 1);
+        }
+
+        double[][] largeTable = new double[500][2];
+
+        for (int i = 0 ; i < largeTable.length ; i++) {
+            largeTable[i][0] = minRange + (maxRange - minRange) * i / (largeTable.length - 1);
+            largeTable[i][1] = 500 + i * 4;
+        }
+
+        m_largeInterpolatingTable = new InterpolatingTable(largeTable);
+    }
+
+
+
+    private double nextRange() {
+
+        m_rangeIndex = (m_rangeIndex + 1) & (kNumOfRanges - 1);
+
+        return m_ranges[m_rangeIndex];
+    }
+
+
+
+    @Benchmark
+    public double lookupByValue() {
+
+        return Utilities.lookupByValue(nextRange(), m_table);
+    }
+
+
+
+    @Benchmark
+    public double interpolatingTable() {
+
+        return m_interpolatingTable.get(nextRange());
+    }
+
+
+
+    @Benchmark
+    public double interpolatingTable500Points() {
+
+        return m_largeInterpolatingTable.get(nextRange());
+    }
+
+
+
+    // both halves of the shot solution from one index
+
+    @Benchmark
+    public double shotSolution() {
+
+        int shotIndex = m_shotTable.indexFor(nextRange());
+
+        return m_shotTable.getRpm(shotIndex) + m_shotTable.getAngleDegrees(shotIndex);
+    }
+}
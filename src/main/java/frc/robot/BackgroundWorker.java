@@ -0,0 +1,205 @@
+package frc.robot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.ThreadConstants;
+
+
+
+// low priority worker thread for everything that isn't control
+//
+// the main robot thread runs at real time priority (see Robot.robotInit()) and shares the roboRIO's two cores with
+// the garbage collector and everything else - anything it doesn't have to do itself, like printing to the console
+// (which can block on the pipe to the driver station), gets handed to this thread instead
+//
+//     BackgroundWorker.log("setShooterSpeedbyRange(" + range + ") = " + rpm);
+//     BackgroundWorker.submit(() -> { ... });
+//
+// work goes through a bounded lock-free queue - any number of threads can submit and the one worker thread takes
+// work out. a submitter claims a slot by moving the write counter forward with a compare and set, then drops its work
+// into that slot - nobody ever waits on a lock, and the main loop never waits on the worker
+//
+// if the worker falls far enough behind that the queue fills, new work is dropped (and counted) rather than growing
+// the queue or holding up whoever submitted it. the queue depth, the deepest it's been and the drop count go to the
+// dashboard
+//
+// work handed over here runs some time later on another thread - it must not touch anything the main loop is
+// changing (hand it a copy)
+
+public final class BackgroundWorker {
+
+    private static final int kCapacity = Integer.highestOneBit(Math.max(ThreadConstants.kWorkerQueueCapacity, 2) - 1) << 1;
+    private static final int kMask     = kCapacity - 1;
+
+    private static final AtomicReferenceArray<Runnable> m_slots = new AtomicReferenceArray<>(kCapacity);
+
+    private static final AtomicLong m_writeCount   = new AtomicLong();      // claimed by producers
+    private static volatile long    m_readCount    = 0;                     // only written by the worker
+
+    private static final AtomicLong m_droppedCount = new AtomicLong();
+    private static volatile long    m_maxDepth     = 0;                     // only written by the worker
+    private static volatile long    m_failedCount  = 0;                     // only written by the worker
+
+    private static Thread m_thread = null;
+
+
+
+    private BackgroundWorker() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    /**
+     * start the worker thread - called once from robotInit() before the main thread goes to real time priority
+     */
+    public static synchronized void start() {
+
+        if (m_thread != null) {
+            return;
+        }
+
+        m_thread = new Thread(BackgroundWorker::run, "BackgroundWorker");
+
+        m_thread.setDaemon(true);                   // never hold the robot program open
+        m_thread.setPriority(Thread.MIN_PRIORITY);
+        m_thread.start();
+    }
+
+
+
+    /* Producers ********************************************************************************
+     ********************************************************************************************/
+
+    /**
+     * run work on the worker thread - returns false (and counts it) if the queue is full and the work was dropped
+     *
+     * safe from any thread
+     */
+    public static boolean submit(Runnable work) {
+
+        long write;
+
+        do {
+
+            write = m_writeCount.get();
+
+            if (write - m_readCount >= kCapacity) {         // full
+                m_droppedCount.incrementAndGet();
+                return false;
+            }
+
+        } while ( ! m_writeCount.compareAndSet(write, write + 1));
+
+        m_slots.lazySet((int)(write & kMask), work);        // the worker picks it up once this shows up
+
+        return true;
+    }
+
+
+
+    /**
+     * print a line to the console from the worker thread
+     */
+    public static boolean log(String message) {
+
+        return submit(() -> System.out.println(message));
+    }
+
+
+
+    /**
+     * same as log() but to stderr
+     */
+    public static boolean logError(String message) {
+
+        return submit(() -> System.err.println(message));
+    }
+
+
+
+    /* Worker ***********************************************************************************
+     ********************************************************************************************/
+
+    private static void run() {
+
+        // make sure we didn't pick up real time priority from whoever started us
+
+        if (Robot.isReal()) {
+            Threads.setCurrentThreadPriority(false, 0);
+        }
+
+        long idleNanos = (long)(ThreadConstants.kWorkerIdlePeriod.in(Seconds) * 1.0e9);
+
+        while (true) {
+
+            long read  = m_readCount;
+            long depth = m_writeCount.get() - read;
+
+            if (depth > m_maxDepth) {
+                m_maxDepth = depth;
+            }
+
+            int index = (int)(read & kMask);
+
+            Runnable work = m_slots.get(index);
+
+            // nothing there yet - either the queue is empty or the producer that claimed this slot hasn't finished
+            // putting its work in. either way come back in a bit rather than spin on the main loop's cores
+
+            if (work == null) {
+                LockSupport.parkNanos(idleNanos);
+                continue;
+            }
+
+            m_slots.set(index, null);
+
+            m_readCount = read + 1;                         // frees the slot for the producers
+
+            try {
+                work.run();
+            }
+            catch (RuntimeException e) {
+                m_failedCount++;
+                DriverStation.reportError("BackgroundWorker: " + e, e.getStackTrace());
+            }
+        }
+    }
+
+
+
+    /* Stats ************************************************************************************
+     ********************************************************************************************/
+
+    public static long getQueueDepth() {
+
+        return m_writeCount.get() - m_readCount;
+    }
+
+
+
+    public static long getDroppedCount() {
+
+        return m_droppedCount.get();
+    }
+
+
+
+    // runs from the MultiRateScheduler at kStatsPeriod (see Robot)
+
+    public static void publishStats() {
+
+        SmartDashboard.putNumber("BackgroundWorker/Queue Depth",     getQueueDepth());
+        SmartDashboard.putNumber("BackgroundWorker/Max Queue Depth", m_maxDepth);
+        SmartDashboard.putNumber("BackgroundWorker/Dropped",         m_droppedCount.get());
+        SmartDashboard.putNumber("BackgroundWorker/Failed",          m_failedCount);
+    }
+}
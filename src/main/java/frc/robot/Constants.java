@@ -35,6 +35,118 @@ public final class Constants {
 
 
 
+  public static class LoopTimingConstants {
+
+    public static final Measure<Time> kLoopBudget = Milliseconds.of(20);   // TimedRobot default period - anything over this is an overrun
+
+    public static final int kMaxTimedEntries      = 48;      // subsystem periodics + scheduled commands we can track at once
+
+    public static final int kHistogramBucketMicros = 100;    // each histogram bucket covers this much time
+    public static final int kHistogramBuckets      = 300;    // 30ms worth of buckets - the last one catches everything longer
+
+    public static final int kPublishPeriodCycles   = 50;     // only push the stats to NetworkTables about once a second
+  }
+
+
+
+  public static class ThreadConstants {
+
+    // the main robot thread goes to real time (SCHED_FIFO) priority on the roboRIO - 1 to 99, higher wins. this
+    // keeps it ahead of the garbage collector and everything else that isn't real time without getting ahead of
+    // the HAL's own threads
+
+    public static final int kMainThreadPriority = 15;
+
+    // see BackgroundWorker
+
+    public static final int kWorkerQueueCapacity        = 256;                  // rounded up to a power of 2
+    public static final Measure<Time> kWorkerIdlePeriod = Milliseconds.of(5);   // how long the worker sleeps when there's nothing to do
+  }
+
+
+
+  public static class LoadGovernorConstants {
+
+    // see LoadGovernor - thresholds are fractions of LoopTimingConstants.kLoopBudget
+
+    public static final double kShedThreshold    = 0.9;    // a cycle over this sheds one more level
+    public static final double kRestoreThreshold = 0.6;    // cycles under this count toward restoring one
+
+    public static final int kRestoreCycles       = 25;     // half a second of headroom before bringing anything back
+    public static final int kDecimation          = 5;      // a decimated tier runs one call in this many
+
+    public static final int kMaxEntries          = 32;
+    public static final int kPublishPeriodCycles = 50;
+  }
+
+
+
+  public static class SchedulerConstants {
+
+    // rates and phase offsets for the work that runs off the MultiRateScheduler instead of every main loop
+    //
+    // offsets are from the start of the main loop's 20ms period - none of them are a multiple of 20ms so they never
+    // share a slot with robotPeriodic(), and they're all different so two of them never land on the same slot either
+
+    public static final Measure<Time> kLedPeriod                   = Milliseconds.of(40);    // 25Hz - nobody can see faster than that
+    public static final Measure<Time> kLedOffset                   = Milliseconds.of(10);
+
+    // the shooter dashboards are empty so nothing is registered at these yet - they're kept so the slots are spoken for
+
+    public static final Measure<Time> kDashboardPeriod             = Milliseconds.of(100);   // 10Hz subsystem dashboards
+    public static final Measure<Time> kShooterDashboardOffset      = Milliseconds.of(15);
+    public static final Measure<Time> kShooterAngleDashboardOffset = Milliseconds.of(35);
+
+    public static final Measure<Time> kFieldPeriod                 = Milliseconds.of(100);   // Field2d creates objects on every update
+    public static final Measure<Time> kFieldOffset                 = Milliseconds.of(65);
+
+    public static final Measure<Time> kStatsPeriod                 = Seconds.of(1);          // CAN write counts
+    public static final Measure<Time> kStatsOffset                 = Milliseconds.of(85);
+    public static final Measure<Time> kWorkerStatsOffset           = Milliseconds.of(185);
+    public static final Measure<Time> kDriveStatsOffset            = Milliseconds.of(285);   // dropped odometry samples, vision
+    public static final Measure<Time> kStatusFrameStatsOffset      = Milliseconds.of(385);   // CAN status frame bus estimate
+  }
+
+
+
+  public static class CanConstants {
+
+    // motor outputs only re-send an unchanged setpoint this often so the controllers always hear from us regularly
+
+    public static final Measure<Time> kMotorKeepAlivePeriod = Milliseconds.of(100);
+
+    // for estimating bus utilization - an extended (29 bit id) frame with 8 data bytes is about 130 bits plus
+    // some bit stuffing
+
+    public static final double kCanBitrate      = 1000000.0;   // roboRIO CAN bus runs at 1Mbps
+    public static final double kCanBitsPerFrame = 135.0;
+  }
+
+
+
+  public static class StartupConstants {
+
+    public static final int kConfigThreads = 4;       // how many devices get configured at once during robotInit()
+
+    // device configuration that's still going after this long gets reported - robotInit() keeps waiting for it though,
+    // the robot loop can't start driving a controller that's in the middle of being reset
+
+    public static final Measure<Time> kConfigSlowWarning = Seconds.of(15);
+  }
+
+
+
+  public static class SimConstants {
+
+    // how long each part of a match runs in the headless sim (see HeadlessSim) - a real match is 15s auto, 2:15 teleop
+
+    public static final Measure<Time> kDisabledLength = Seconds.of(1);
+    public static final Measure<Time> kAutoLength     = Seconds.of(15);
+    public static final Measure<Time> kTeleopLength   = Seconds.of(135);
+  }
+
+
+
   public static class FieldConstants {
 
     public static final Measure<Distance> kFieldXMax = Feet.of(53).plus(Inches.of(3));         // length from alliance wall to alliance wall
@@ -80,6 +192,33 @@ public final class Constants {
 
     public static final boolean kDriveSqInputs = true;
 
+    public static final double kDriveOutputEpsilon = 0.002;   // drive duty cycle changes smaller than this don't get sent to the controllers
+
+    // odometry runs on our own primitive pose (no new objects every cycle) unless this is turned off, in which case
+    // we go back to WPILib's DifferentialDriveOdometry
+
+    public static final boolean kUseAllocationFreeOdometry = true;
+
+
+    // encoders and gyro get sampled on their own thread much faster than the main loop and the main loop integrates
+    // all of the samples it finds each cycle - needs kUseAllocationFreeOdometry
+
+    public static final boolean kUseHighRateOdometry = true;
+
+    public static final Measure<Time> kOdometrySamplePeriod = Milliseconds.of(5);   // 200Hz
+
+    public static final int kOdometrySampleBufferSize = 64;    // about 320ms worth of samples at 200Hz if the main loop gets held up
+
+    // pose estimation - odometry gets corrected by vision measurements at the time the camera took the picture and
+    // then replayed forward from there - needs kUseAllocationFreeOdometry
+
+    public static final boolean kUsePoseEstimator = true;
+
+    public static final int kPoseHistorySize = 256;            // 1.28s of history at 200Hz - vision is typically 30-100ms late
+
+    public static final double kVisionTranslationTrust = 0.3;  // how far (0 - 1) we move toward a vision measurement's x and y
+    public static final double kVisionHeadingTrust     = 0.0;  // the gyro is better at heading than vision so don't move it for now
+
     // physical drivetrain constants
 
     public static final Measure<Distance> kDrivetrainTrack         = Inches.of(29);   // close to the width of the robot - using a typical 30" width
@@ -95,6 +234,11 @@ public final class Constants {
 
   public static class IntakeConstants {
 
+    // there's no note sensor yet - whether we're holding a note starts out as this, the driver toggles it with A
+    // once a note's loaded and finishing a shot clears it (see RobotContainer). don't set this true - ready mode would
+    // keep the flywheel spinning right after every shot whenever a target's in range
+
+    public static final boolean kAssumeNoteHeld = false;
   }
 
 
@@ -134,9 +278,92 @@ public final class Constants {
 
     public static final double kShooterSpeedTolerance = 25.0;    // +/- tolerance in RPM
 
+    // a target has to move at least this much to count as a new spin-up (timing, overshoot, the per-strategy
+    // averages) - ready mode moves the target around with every bit of vision jitter and the table is about 270 RPM/m,
+    // so anything close to kShooterSpeedTolerance would count 10cm of jitter as a spin-up
+
+    public static final double kNewSpinUpRpm          = 400.0;
+
+    // flywheel model for the simulation - not measured on this robot, the MOI is a typical 4" wheel shooter
+
+    public static final double kShooterGearing       = 1.0;      // motor turns per flywheel turn
+    public static final double kShooterMoi           = 0.002;    // kg m^2
+
+    public static final Measure<Time> kSparkMaxPidPeriod = Milliseconds.of(1);   // the SparkMax runs its PID at 1kHz - the sim emulates that
+
+    public static final double kShooterRpmEpsilon     = 1.0;     // shooter setpoint changes smaller than this (RPM) don't get sent
+    public static final double kKickerOutputEpsilon   = 0.002;   // kicker duty cycle changes smaller than this don't get sent
+
     public static final Measure<Distance> kMinShootRange = Meters.of(1.0);
     public static final Measure<Distance> kMaxShootRange = Meters.of(14.5);
 
+    public static final Measure<Distance> kShotTableRangeStep = Centimeters.of(2);  // grid spacing of the combined speed / angle shot table
+
+
+    // ready mode - keeps the flywheel spun up for the range we're at while we've got a note and are in range
+    //
+    // we start once we're inside the shooting range but don't stop until we're this far outside it and we keep
+    // going through short vision dropouts so the flywheel doesn't keep starting and stopping
+
+    public static final Measure<Distance> kReadyRangeHysteresis = Meters.of(0.5);
+    public static final Measure<Time> kReadyTargetHoldTime      = Milliseconds.of(500);
+
+    // when the battery sags, ready mode only spins up part of the way - the shot does the rest
+
+    public static final Measure<Voltage> kReadyLowBattery        = Volts.of(11.0);
+    public static final Measure<Voltage> kReadyBatteryHysteresis = Volts.of(0.5);
+    public static final double kReadyLowBatteryRpmFraction       = 0.6;
+
+
+    // early kick - the kicker takes kNoteFeedTime to get the note to the flywheel so we can start it that long before
+    // the flywheel is predicted to be in tolerance instead of waiting for it to actually get there
+
+    public static final boolean kUseEarlyKick                = true;
+    public static final Measure<Time> kNoteFeedTime          = Milliseconds.of(80);     // kicker on to note touching the flywheel - measure this
+
+    // flywheel estimator - the flywheel is treated as first order (it closes on its target exponentially) with a time
+    // constant we keep learning from how it actually behaves
+
+    public static final Measure<Time> kFlywheelTimeConstant  = Seconds.of(0.3);         // starting guess
+    public static final double kFlywheelAccelFilter          = 0.5;      // low pass on the acceleration - 1 is no filtering
+    public static final double kFlywheelTimeConstantFilter   = 0.2;      // how fast the learned time constant moves
+    public static final double kFlywheelMinAccel             = 100.0;    // RPM/s - below this the acceleration is too noisy to learn from
+
+
+    // roboRIO side velocity loop
+    //
+    // instead of the SparkMax PID, the flywheel can be run from a feedforward + PID loop on the roboRIO that runs
+    // every kRioLoopPeriod and sends the SparkMax a voltage - that needs the SparkMax velocity every loop so it uses
+    // the kRioVelocityLoop status frame profile
+
+    public static final boolean kUseRioVelocityLoop          = false;
+    public static final Measure<Time> kRioLoopPeriod         = Milliseconds.of(5);
+    public static final Measure<Time> kRioLoopOffset         = Milliseconds.of(2);      // after the main loop starts so they don't land together
+
+    // the NEO's hall sensor velocity is a moving window - out of the box it's a 32ms measurement averaged over 8 of
+    // them so what we read is tens of ms old, which is most of a spin-up at 5ms a loop. the roboRIO loop shortens it
+    // to the smallest window the SparkMax allows and a light average - noisier, but only a few ms behind. the P gain
+    // below is sized for that noise. the SparkMax loop keeps the defaults, it doesn't use this measurement
+
+    public static final int kRioEncoderMeasurementPeriodMs   = 8;                       // 8 to 64
+    public static final int kRioEncoderAverageDepth          = 2;                       // 1 to 8
+
+    public static final double kRioFlywheelKs                = 0.1;                     // volts
+    public static final double kRioFlywheelKv                = 12.0 / RobotConstants.kNeoMaxRpm;  // volts per RPM
+    public static final double kRioFlywheelKa                = 0.0;
+    public static final double kRioFlywheelP                 = 0.002;                   // volts per RPM of error - tune as needed
+    public static final double kRioFlywheelI                 = 0.0;
+    public static final double kRioFlywheelD                 = 0.0;
+    public static final double kRioMaxVoltage                = 12.0;
+
+    public static final double kShooterVoltageEpsilon        = 0.01;     // voltage changes smaller than this don't get sent
+
+
+    // spin-up strategy (see SpinUpStrategy) - can be changed from the dashboard
+
+    public static final SpinUpStrategy kDefaultSpinUpStrategy = SpinUpStrategy.kPid;
+    public static final double kBangBangHandoffBand           = 300.0;    // RPM below the target where full output hands off to the velocity loop
+
 
     // both of the below are timesouts for the shooting related commands
 
@@ -158,6 +385,79 @@ public final class Constants {
 
 
 
+   public static class ShotSimConstants {
+
+    // note and shooter physics for the offline shot table generator (see ShotTableGenerator) - nothing on the robot
+    // uses these
+    //
+    // the note numbers come from the game manual, the shooter numbers are estimates until we measure them
+
+    public static final double kNoteMass          = 0.235;       // kg
+    public static final double kNoteFrontalArea   = 0.018;       // m^2 - flying flat, it's about diameter x thickness
+    public static final double kNoteDragCoeff     = 1.0;
+    public static final double kNoteLiftPerSpin   = 0.3;         // lift coefficient per unit of spin ratio (rim speed / air speed)
+    public static final double kNoteMaxLiftCoeff  = 0.4;
+    public static final double kAirDensity        = 1.2;         // kg/m^3
+
+    public static final double kShooterWheelRadius = Inches.of(2).in(Meters);
+    public static final double kExitEfficiency     = 0.5;        // note leaves at this fraction of the wheel rim speed - one wheel against a fixed hood
+    public static final double kNoteSpinRatio      = 0.5;        // note rim speed as a fraction of its exit speed (backspin)
+
+    public static final Measure<Distance> kReleaseHeight = Meters.of(0.6);
+
+    // the speaker opening - the note has to be between these heights when it gets to the range we measured
+
+    public static final Measure<Distance> kTargetLowHeight  = Meters.of(1.98);
+    public static final Measure<Distance> kTargetHighHeight = Meters.of(2.11);
+
+    // how much things vary shot to shot (1 sigma)
+
+    public static final double kRpmNoise            = 25.0;      // about what kShooterSpeedTolerance lets through
+    public static final double kAngleNoiseDegrees   = 1.0;
+    public static final double kRangeNoise          = 0.05;      // m - vision
+    public static final double kEfficiencyNoise     = 0.03;      // notes aren't all the same
+
+    // the search - every candidate RPM / angle that looks like it might work gets kTrialsPerCandidate Monte Carlo shots
+
+    public static final double kMinRpm              = 500.0;
+    public static final double kRpmStep             = 50.0;
+    public static final double kMinAngleDegrees     = 10.0;
+    public static final double kMaxAngleDegrees     = 70.0;
+    public static final double kAngleStepDegrees    = 0.5;
+
+    public static final int kTrialsPerCandidate     = 400;
+    public static final Measure<Distance> kRangeBucket = Meters.of(0.5);   // one table row per bucket
+
+    public static final Measure<Time> kIntegrationStep = Milliseconds.of(1);
+    public static final Measure<Time> kMaxFlightTime   = Seconds.of(3);
+   }
+
+
+
+   public static class VisionConstants {
+
+    // the vision coprocessor publishes one double array per frame so all of the values in it always go together:
+    //
+    //     { has target (0 or 1), range to target (meters), yaw to target (degrees), pipeline latency (ms) }
+
+    public static final String kTargetDataTopic = "/Vision/TargetData";
+
+    public static final int kTargetDataHasTarget = 0;          // indexes into the target data array
+    public static final int kTargetDataRange     = 1;
+    public static final int kTargetDataYaw       = 2;
+    public static final int kTargetDataLatency   = 3;
+    public static final int kTargetDataLength    = 4;
+
+    public static final Measure<Time> kMaxRangeAge = Milliseconds.of(250);     // a range older than this when we shoot is flagged as stale
+
+    // simulation stand-in for the vision coprocessor
+
+    public static final Measure<Time> kSimFeedPeriod  = Milliseconds.of(50);    // 20 frames a second
+    public static final Measure<Time> kSimFeedLatency = Milliseconds.of(40);    // typical camera + processing delay
+   }
+
+
+
    public static class LedConstants {
 
     public static final int kNumOfLeds  = 15;
@@ -0,0 +1,18 @@
+package frc.robot;
+
+
+
+// how much it matters that a piece of work runs every time it's supposed to - see LoadGovernor
+//
+//   kCritical  - control (drive, flywheel loop, odometry) - never shed
+//   kNormal    - telemetry we use while driving (pose publishing) - decimated, then shed, once things get bad
+//   kLow       - looks and dashboards (LED effects, Field2d, stats) - the first thing to go
+//
+// the order matters - LoadGovernor sheds from the bottom of the list up
+
+public enum Criticality {
+
+    kCritical,
+    kNormal,
+    kLow
+}
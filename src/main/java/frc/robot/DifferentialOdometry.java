@@ -0,0 +1,141 @@
+package frc.robot;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+
+
+// allocation-free differential drive odometry
+//
+// does the same math as WPILib's DifferentialDriveOdometry but keeps the pose as plain doubles that get updated
+// in place - DifferentialDriveOdometry.update() creates several new Rotation2d / Twist2d / Pose2d objects every
+// time it's called and at 50 times a second those add up to work for the garbage collector (see the warning on
+// collisionCheck() in the DriveSubsystem)
+//
+// a Pose2d only gets created when somebody actually asks for one through getPoseMeters() - anything that runs
+// every cycle should use getX() / getY() / getHeadingRadians() or copyTo() instead
+//
+// all angles are in radians, counter-clockwise positive (same as Rotation2d) - the gyro angle passed in is
+// whatever the gyro reads and we keep an offset so the heading can be reset to anything we want
+
+public class DifferentialOdometry {
+
+    private double m_x;
+    private double m_y;
+    private double m_heading;                   // radians
+
+    private double m_gyroOffset;                // added to the raw gyro angle to get our heading
+
+    private double m_prevLeftDistance;
+    private double m_prevRightDistance;
+
+
+
+    public DifferentialOdometry(double gyroRadians, double leftDistance, double rightDistance,
+                                double x, double y, double headingRadians) {
+
+        resetPosition(gyroRadians, leftDistance, rightDistance, x, y, headingRadians);
+    }
+
+
+
+    public void resetPosition(double gyroRadians, double leftDistance, double rightDistance,
+                              double x, double y, double headingRadians) {
+
+        m_x       = x;
+        m_y       = y;
+        m_heading = headingRadians;
+
+        m_gyroOffset = headingRadians - gyroRadians;
+
+        m_prevLeftDistance  = leftDistance;
+        m_prevRightDistance = rightDistance;
+    }
+
+
+
+    /**
+     * integrate the wheel distances since the last update - same as DifferentialDriveOdometry.update()
+     */
+    public void update(double gyroRadians, double leftDistance, double rightDistance) {
+
+        double deltaLeft  = leftDistance  - m_prevLeftDistance;
+        double deltaRight = rightDistance - m_prevRightDistance;
+
+        m_prevLeftDistance  = leftDistance;
+        m_prevRightDistance = rightDistance;
+
+        double heading = gyroRadians + m_gyroOffset;
+
+        double dx     = (deltaLeft + deltaRight) / 2.0;
+        double dtheta = MathUtil.angleModulus(heading - m_heading);
+
+        // this is Pose2d.exp() for a twist with no sideways component (a differential drive can't slide sideways)
+        //
+        // for tiny angle changes we use the series expansion so we don't end up dividing by (almost) zero
+
+        double s;
+        double c;
+
+        if (Math.abs(dtheta) < 1.0e-9) {
+            s = 1.0 - dtheta * dtheta / 6.0;
+            c = 0.5 * dtheta;
+        } else {
+            s = Math.sin(dtheta) / dtheta;
+            c = (1.0 - Math.cos(dtheta)) / dtheta;
+        }
+
+        double forward  = dx * s;               // movement relative to where we were pointing
+        double sideways = dx * c;
+
+        double cosHeading = Math.cos(m_heading);
+        double sinHeading = Math.sin(m_heading);
+
+        m_x += forward * cosHeading - sideways * sinHeading;
+        m_y += forward * sinHeading + sideways * cosHeading;
+
+        m_heading = MathUtil.angleModulus(heading);     // like WPILib, we trust the gyro for the heading itself
+    }
+
+
+
+    public double getX() {
+
+        return m_x;
+    }
+
+
+
+    public double getY() {
+
+        return m_y;
+    }
+
+
+
+    public double getHeadingRadians() {
+
+        return m_heading;
+    }
+
+
+
+    // fills in {x, y, heading degrees} - same layout Field2d and the dashboards use for a pose
+
+    public void copyTo(double[] pose) {
+
+        pose[0] = m_x;
+        pose[1] = m_y;
+        pose[2] = Math.toDegrees(m_heading);
+    }
+
+
+
+    // creates a new Pose2d every call - don't use this in anything that runs every cycle
+
+    public Pose2d getPoseMeters() {
+
+        return new Pose2d(m_x, m_y, new Rotation2d(m_heading));
+    }
+}
@@ -0,0 +1,116 @@
+package frc.robot;
+
+
+
+// interpolating lookup table
+//
+// this is the "smarter" version of Utilities.lookupByValue() - rather than returning the value for the entry at or
+// below the passed key, we draw a straight line between the two entries on either side of it and return the point
+// on that line
+//
+// same rules as lookupByValue() for the ends of the table - anything below the first key gets the first value and
+// anything above the last key gets the last value
+//
+// the table is passed in the same { {key, value}, {key, value}, ... } form we've always used but it gets copied
+// into flat arrays with the slope of each segment worked out up front so a lookup is a binary search plus a
+// multiply and an add - no matter how many calibration points we end up with, it doesn't get much slower and
+// it never creates any new objects
+
+public class InterpolatingTable {
+
+    private static final int kLookupKey   = 0;      // indexes into the rows of the passed table
+    private static final int kLookupValue = 1;
+
+    private final double[] m_keys;
+    private final double[] m_values;
+    private final double[] m_slopes;                // slope of the segment that starts at each key
+
+    private final int m_lastIndex;
+
+
+
+    /**
+     * builds the table from { {key, value}, ... } rows - keys must be strictly increasing
+     */
+    public InterpolatingTable(double[][] table) {
+
+        if (table == null || table.length == 0) {
+            throw new IllegalArgumentException("InterpolatingTable: table must have at least one entry");
+        }
+
+        m_keys      = new double[table.length];
+        m_values    = new double[table.length];
+        m_slopes    = new double[table.length];
+        m_lastIndex = table.length - 1;
+
+        for (int i = 0 ; i < table.length ; i++) {
+
+            m_keys[i]   = table[i][kLookupKey];
+            m_values[i] = table[i][kLookupValue];
+
+            if (i > 0 && m_keys[i] <= m_keys[i - 1]) {
+                throw new IllegalArgumentException("InterpolatingTable: keys must be increasing - entry " + i + " (" + m_keys[i] + ")");
+            }
+        }
+
+        // the last entry has no segment after it so it's slope stays 0.0
+
+        for (int i = 0 ; i < m_lastIndex ; i++) {
+            m_slopes[i] = (m_values[i + 1] - m_values[i]) / (m_keys[i + 1] - m_keys[i]);
+        }
+    }
+
+
+
+    public double get(double key) {
+
+        if (key <= m_keys[0]) {                         // less than the first?
+            return m_values[0];
+        }
+
+        if (key >= m_keys[m_lastIndex]) {               // greater than the last?
+            return m_values[m_lastIndex];
+        }
+
+        // binary search for the segment - we want the last key that is <= the passed key
+        //
+        // we already know key is strictly between the first and last keys so low always ends up on a valid segment
+
+        int low  = 0;
+        int high = m_lastIndex;
+
+        while (high - low > 1) {
+
+            int mid = (low + high) >>> 1;
+
+            if (m_keys[mid] <= key) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+
+        return m_values[low] + m_slopes[low] * (key - m_keys[low]);
+    }
+
+
+
+    public int size() {
+
+        return m_keys.length;
+    }
+
+
+
+    public double getMinKey() {
+
+        return m_keys[0];
+    }
+
+
+
+    public double getMaxKey() {
+
+        return m_keys[m_lastIndex];
+    }
+}
@@ -0,0 +1,193 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.LoadGovernorConstants;
+import frc.robot.Constants.LoopTimingConstants;
+
+
+
+// loop budget governor
+//
+// when a cycle runs long, everything in it was equally important - the LED bounce and the dashboards kept on
+// competing with drive control for the next cycle too. this lets the things that don't matter get out of the way
+//
+// anything that can be skipped registers with a Criticality and asks before doing its work:
+//
+//     private final int m_governorSlot = LoadGovernor.register("LedBounceCommand", Criticality.kLow);
+//
+//     if ( ! LoadGovernor.shouldRun(m_governorSlot)) {
+//         return;
+//     }
+//
+// Robot.loopFunc() hands update() how long everything in each 20ms period took - the whole main loop plus whatever
+// the MultiRateScheduler ran in between. a period over kShedThreshold of the budget raises the shed level one step,
+// and every kRestoreCycles periods in a row under kRestoreThreshold of the budget drop it one step:
+//
+//   level 0  - everything runs
+//   level 1  - kLow only runs one call in kDecimation
+//   level 2  - kLow is shed, kNormal only runs one call in kDecimation
+//   level 3  - kLow and kNormal are both shed
+//
+// kCritical always runs. how many calls each tier has had shed and how many cycles we've spent at each level go to
+// the dashboard so we can see how often it's happening
+//
+// the subsystems' initSendable() properties aren't tiered - WPILib reads them all in the main loop after
+// robotPeriodic() and there's no way to skip a getter, only to hand back a stale value, which saves nothing since the
+// getters are all field reads. what they cost is counted in the period's time though
+//
+// everything here runs on the main thread
+
+public final class LoadGovernor {
+
+    private static final int kMaxEntries = LoadGovernorConstants.kMaxEntries;
+    private static final int kMaxLevel   = 3;
+
+    private static final double kShedMs    = LoopTimingConstants.kLoopBudget.in(Milliseconds) * LoadGovernorConstants.kShedThreshold;
+    private static final double kRestoreMs = LoopTimingConstants.kLoopBudget.in(Milliseconds) * LoadGovernorConstants.kRestoreThreshold;
+
+    private static final Criticality[] m_criticality = new Criticality[kMaxEntries];
+    private static final long[] m_calls              = new long[kMaxEntries];    // for decimation
+
+    private static final long[] m_tierShed           = new long[Criticality.values().length];
+    private static final String[] m_tierShedKeys     = new String[Criticality.values().length];
+
+    private static final long[] m_levelCycles        = new long[kMaxLevel + 1];
+
+    private static int m_entryCount       = 0;
+
+    private static int m_level            = 0;
+    private static int m_quietCycles      = 0;      // cycles in a row under the restore threshold
+    private static long m_cycleCount      = 0;
+
+
+
+    static {
+
+        for (Criticality tier : Criticality.values()) {
+            m_tierShedKeys[tier.ordinal()] = "LoadGovernor/" + tier.name() + " Shed";
+        }
+    }
+
+
+
+    private LoadGovernor() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    /**
+     * register something that can be shed and get back the slot to use with shouldRun()
+     *
+     * call this once (typically as a field initializer) and hang on to the slot - not every cycle
+     */
+    public static int register(String name, Criticality criticality) {
+
+        if (m_entryCount >= kMaxEntries) {
+            System.err.println("LoadGovernor: too many entries - " + name + " will never be shed");
+            return -1;
+        }
+
+        int slot = m_entryCount++;
+
+        m_criticality[slot] = criticality;
+
+        return slot;
+    }
+
+
+
+    /**
+     * whether the work in this slot gets to run this time - false means skip it
+     */
+    public static boolean shouldRun(int slot) {
+
+        if (slot < 0) {
+            return true;
+        }
+
+        Criticality tier = m_criticality[slot];
+
+        boolean run;
+
+        switch (tier) {
+
+            case kNormal:
+                run = m_level < 2 || (m_level == 2 && m_calls[slot] % LoadGovernorConstants.kDecimation == 0);
+                break;
+
+            case kLow:
+                run = m_level < 1 || (m_level == 1 && m_calls[slot] % LoadGovernorConstants.kDecimation == 0);
+                break;
+
+            default:
+                run = true;
+                break;
+        }
+
+        m_calls[slot]++;
+
+        if ( ! run) {
+            m_tierShed[tier.ordinal()]++;
+        }
+
+        return run;
+    }
+
+
+
+    // called once a period from Robot.loopFunc() with how long everything in the period took
+
+    public static void update(double lastCycleMs) {
+
+        if (lastCycleMs > kShedMs) {
+
+            if (m_level < kMaxLevel) {
+                m_level++;
+            }
+
+            m_quietCycles = 0;
+
+        } else if (lastCycleMs < kRestoreMs) {
+
+            if (++m_quietCycles >= LoadGovernorConstants.kRestoreCycles && m_level > 0) {
+                m_level--;
+                m_quietCycles = 0;
+            }
+
+        } else {
+            m_quietCycles = 0;          // in between - hold where we are
+        }
+
+        m_levelCycles[m_level]++;
+        m_cycleCount++;
+
+        if (m_cycleCount % LoadGovernorConstants.kPublishPeriodCycles == 0) {
+            publish();
+        }
+    }
+
+
+
+    public static int getLevel() {
+
+        return m_level;
+    }
+
+
+
+    private static void publish() {
+
+        SmartDashboard.putNumber("LoadGovernor/Level", m_level);
+
+        for (int i = 0 ; i < m_tierShed.length ; i++) {
+            SmartDashboard.putNumber(m_tierShedKeys[i], m_tierShed[i]);
+        }
+
+        SmartDashboard.putNumber("LoadGovernor/Cycles Shedding", m_cycleCount - m_levelCycles[0]);
+        SmartDashboard.putNumber("LoadGovernor/Cycles At Level 3", m_levelCycles[kMaxLevel]);
+    }
+}
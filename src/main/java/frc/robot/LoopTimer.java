@@ -0,0 +1,354 @@
+package frc.robot;
+
+import java.util.IdentityHashMap;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.LoopTimingConstants;
+
+
+
+// loop timing instrumentation
+//
+// the watchdog printout we get when the 20ms loop overruns tells us *that* it overran but not really *who* made it
+// overrun - this keeps track of how long every subsystem periodic() and every scheduled command execute() takes
+// each cycle so we can point at the culprit
+//
+// everything is kept in arrays that are allocated once up front - the whole point of this is to find out where
+// our loop time goes so the timer itself shouldn't be creating garbage for the collector every cycle
+//
+// subsystems time themselves:
+//
+//     private final int m_periodicTimingSlot = LoopTimer.register("DriveSubsystem.periodic()");
+//
+//     long startTime = LoopTimer.start();
+//     ...
+//     LoopTimer.stop(m_periodicTimingSlot, startTime);
+//
+// commands get timed automatically through the command scheduler callbacks once installCommandTiming() is called
+//
+// work that runs on its own schedule between robotPeriodic() calls (the MultiRateScheduler tasks) registers with
+// registerOutOfCycle() instead - each run goes straight into its histogram, it never gets folded into a cycle it wasn't
+// part of and it can't be named as the culprit for a robotPeriodic() overrun
+//
+// each entry gets a histogram of its per-cycle time with kHistogramBucketMicros wide buckets which is what we pull
+// the p50 and p99 values from - they are only as accurate as the bucket width but that's plenty for finding the
+// problem children
+
+public final class LoopTimer {
+
+    private static final int kMaxEntries   = LoopTimingConstants.kMaxTimedEntries;
+    private static final int kBuckets      = LoopTimingConstants.kHistogramBuckets;
+    private static final long kBucketNanos = LoopTimingConstants.kHistogramBucketMicros * 1000L;
+    private static final long kBudgetNanos = (long)(LoopTimingConstants.kLoopBudget.in(Seconds) * 1.0e9);
+
+    private static final int kTotalSlot    = 0;         // the whole robotPeriodic() is always the first entry
+
+    private static final String[] m_names     = new String[kMaxEntries];
+    private static final String[] m_p50Keys   = new String[kMaxEntries];    // NT keys are built once when the entry is registered
+    private static final String[] m_p99Keys   = new String[kMaxEntries];
+    private static final String[] m_maxKeys   = new String[kMaxEntries];
+
+    private static final int[][] m_histograms = new int[kMaxEntries][kBuckets];
+    private static final long[] m_samples     = new long[kMaxEntries];
+    private static final long[] m_maxNanos    = new long[kMaxEntries];
+    private static final long[] m_cycleNanos  = new long[kMaxEntries];      // time accumulated by each entry this cycle
+    private static final boolean[] m_ranThisCycle = new boolean[kMaxEntries];
+    private static final boolean[] m_outOfCycle   = new boolean[kMaxEntries];  // recorded per run, not per cycle
+
+    private static final IdentityHashMap<Command, Integer> m_commandSlots = new IdentityHashMap<>(kMaxEntries * 2);
+
+    private static int m_entryCount = 0;
+    private static boolean m_entryOverflowPrinted = false;
+
+    private static long m_cycleStartNanos    = 0;
+    private static long m_lastCommandMark    = 0;      // end of the previous command execute() (or the start of the command phase)
+    private static long m_cycleCount         = 0;
+    private static long m_lastCycleNanos     = 0;
+
+    private static long m_overrunCount       = 0;
+    private static long m_lastOverrunCycle   = -1;
+    private static int  m_lastOverrunCulprit = -1;
+
+
+
+    static {
+        register("robotPeriodic()");                    // kTotalSlot
+    }
+
+
+
+    private LoopTimer() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    /**
+     * register a named entry to be timed and get back the slot to use with stop()
+     *
+     * call this once (typically as a field initializer) and hang on to the slot - not every cycle
+     */
+    public static int register(String name) {
+
+        if (m_entryCount >= kMaxEntries) {
+
+            if ( ! m_entryOverflowPrinted) {
+                System.err.println("LoopTimer: too many timed entries - not timing " + name);
+                m_entryOverflowPrinted = true;
+            }
+
+            return -1;
+        }
+
+        int slot = m_entryCount++;
+
+        m_names[slot]   = name;
+        m_p50Keys[slot] = "LoopTiming/" + name + "/p50 ms";
+        m_p99Keys[slot] = "LoopTiming/" + name + "/p99 ms";
+        m_maxKeys[slot] = "LoopTiming/" + name + "/max ms";
+
+        return slot;
+    }
+
+
+
+    /**
+     * same as register() for something that runs outside robotPeriodic() - every stop() is one sample on its own
+     */
+    public static int registerOutOfCycle(String name) {
+
+        int slot = register(name);
+
+        if (slot >= 0) {
+            m_outOfCycle[slot] = true;
+        }
+
+        return slot;
+    }
+
+
+
+    // hook into the command scheduler so every scheduled command gets its own entry
+    //
+    // the scheduler runs subsystem periodics, then polls the button loop, then runs the commands - we put a mark on the
+    // end of the button loop so the first command is measured from there and each following command is measured from
+    // the end of the one before it
+    //
+    // this needs to be called after all of the button bindings are made so our mark is the last thing the loop polls
+
+    public static void installCommandTiming() {
+
+        CommandScheduler.getInstance().getDefaultButtonLoop().bind(LoopTimer::markCommandPhase);
+        CommandScheduler.getInstance().onCommandExecute(LoopTimer::commandExecuted);
+    }
+
+
+
+    public static long start() {
+
+        return System.nanoTime();
+    }
+
+
+
+    public static void stop(int slot, long startNanos) {
+
+        if (slot < 0) {
+            return;
+        }
+
+        if (m_outOfCycle[slot]) {
+            record(slot, System.nanoTime() - startNanos);
+            return;
+        }
+
+        m_cycleNanos[slot]  += System.nanoTime() - startNanos;
+        m_ranThisCycle[slot] = true;
+    }
+
+
+
+    private static void markCommandPhase() {
+
+        m_lastCommandMark = System.nanoTime();
+    }
+
+
+
+    private static void commandExecuted(Command command) {
+
+        long now = System.nanoTime();
+
+        Integer slot = m_commandSlots.get(command);
+
+        if (slot == null) {                             // first time we've seen this one - only allocates once per command
+            slot = register(command.getName() + ".execute()");
+            m_commandSlots.put(command, slot);
+        }
+
+        stop(slot, m_lastCommandMark);
+
+        m_lastCommandMark = now;
+    }
+
+
+
+    /* Cycle ************************************************************************************
+     ********************************************************************************************/
+
+    // called at the very top of robotPeriodic()
+
+    public static void beginCycle() {
+
+        m_cycleStartNanos = System.nanoTime();
+        m_lastCommandMark = m_cycleStartNanos;
+    }
+
+
+
+    // called at the very bottom of robotPeriodic()
+    //
+    // folds everything that ran this cycle into the histograms, checks the budget and publishes every so often
+
+    public static void endCycle() {
+
+        m_lastCycleNanos = System.nanoTime() - m_cycleStartNanos;
+
+        m_cycleNanos[kTotalSlot]   = m_lastCycleNanos;
+        m_ranThisCycle[kTotalSlot] = true;
+
+        int culprit = -1;
+        long culpritNanos = 0;
+
+        for (int i = 0 ; i < m_entryCount ; i++) {
+
+            if ( ! m_ranThisCycle[i]) {
+                continue;
+            }
+
+            long nanos = m_cycleNanos[i];
+
+            record(i, nanos);
+
+            if (i != kTotalSlot && nanos > culpritNanos) {
+                culprit      = i;
+                culpritNanos = nanos;
+            }
+
+            m_cycleNanos[i]   = 0;
+            m_ranThisCycle[i] = false;
+        }
+
+        if (m_lastCycleNanos > kBudgetNanos) {
+
+            m_overrunCount++;
+            m_lastOverrunCycle   = m_cycleCount;
+            m_lastOverrunCulprit = culprit;
+
+            // this one does allocate but only when we've already blown the budget - the printing itself happens on
+            // the worker so it doesn't make the next cycle late too
+
+            BackgroundWorker.logError("LoopTimer: cycle " + m_cycleCount + " overran: " + nanosToMs(m_lastCycleNanos) + " ms, worst: "
+                                      + (culprit < 0 ? "unknown" : m_names[culprit]) + " " + nanosToMs(culpritNanos) + " ms");
+        }
+
+        if (m_cycleCount % LoopTimingConstants.kPublishPeriodCycles == 0) {
+            publish();
+        }
+
+        m_cycleCount++;
+    }
+
+
+
+    // one sample into an entry's histogram
+
+    private static void record(int slot, long nanos) {
+
+        int bucket = (int)(nanos / kBucketNanos);
+
+        if (bucket >= kBuckets) {
+            bucket = kBuckets - 1;                      // the last bucket catches everything that's too long
+        }
+
+        m_histograms[slot][bucket]++;
+        m_samples[slot]++;
+
+        if (nanos > m_maxNanos[slot]) {
+            m_maxNanos[slot] = nanos;
+        }
+    }
+
+
+
+    public static double getLastCycleMs() {
+
+        return nanosToMs(m_lastCycleNanos);
+    }
+
+
+
+    public static long getOverrunCount() {
+
+        return m_overrunCount;
+    }
+
+
+
+    /* Stats ************************************************************************************
+     ********************************************************************************************/
+
+    // return the upper edge of the bucket the given percentile (0.0 - 1.0) falls into
+
+    private static double percentileMs(int slot, double percentile) {
+
+        long target = (long)Math.ceil(m_samples[slot] * percentile);
+        long seen   = 0;
+
+        int[] histogram = m_histograms[slot];
+
+        for (int bucket = 0 ; bucket < kBuckets ; bucket++) {
+
+            seen += histogram[bucket];
+
+            if (seen >= target) {
+                return nanosToMs((bucket + 1) * kBucketNanos);
+            }
+        }
+
+        return nanosToMs(kBuckets * kBucketNanos);
+    }
+
+
+
+    private static double nanosToMs(long nanos) {
+
+        return nanos / 1.0e6;
+    }
+
+
+
+    private static void publish() {
+
+        for (int i = 0 ; i < m_entryCount ; i++) {
+
+            if (m_samples[i] == 0) {
+                continue;
+            }
+
+            SmartDashboard.putNumber(m_p50Keys[i], percentileMs(i, 0.50));
+            SmartDashboard.putNumber(m_p99Keys[i], percentileMs(i, 0.99));
+            SmartDashboard.putNumber(m_maxKeys[i], nanosToMs(m_maxNanos[i]));
+        }
+
+        SmartDashboard.putNumber("LoopTiming/Overrun Count",      m_overrunCount);
+        SmartDashboard.putNumber("LoopTiming/Last Overrun Cycle", m_lastOverrunCycle);
+        SmartDashboard.putString("LoopTiming/Last Overrun Culprit",
+                                 m_lastOverrunCulprit < 0 ? "none" : m_names[m_lastOverrunCulprit]);
+    }
+}
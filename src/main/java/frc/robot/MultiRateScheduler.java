@@ -0,0 +1,180 @@
+package frc.robot;
+
+import java.util.ArrayList;
+
+import edu.wpi.first.units.Measure;
+import edu.wpi.first.units.Time;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+
+import static edu.wpi.first.units.Units.*;
+
+
+
+// multi-rate periodic scheduler
+//
+// everything used to run once every 20ms in robotPeriodic() whether it needed to or not - the LED buffer went out
+// every cycle, the dashboards got refreshed every cycle - and all of that landed in the same loop as drive control
+//
+// work that wants its own rate registers here with a period and a phase offset:
+//
+//     MultiRateScheduler.register("LedSubsystem.flush()", this::flush, SchedulerConstants.kLedPeriod,
+//                                                                      SchedulerConstants.kLedOffset, Criticality.kLow);
+//
+// robotInit() calls install() which hands every task to TimedRobot.addPeriodic() - TimedRobot runs them on the main
+// thread at their own times in between runs of the main loop. the offset is from the start of the main loop's
+// 20ms period, so anything with an offset that isn't a multiple of 20ms never runs in the same slot as
+// robotPeriodic() - give the different tasks different offsets and they won't stack up on each other either
+//
+// because it's all on the main thread nothing here races periodic() or the commands
+//
+// the headless sim doesn't run TimedRobot's loop - it asks getNextDueTime() and steps the clock to each task in turn
+// with runDue()
+//
+// every task gets its own LoopTimer entry under its name - timed per run since it isn't part of robotPeriodic() -
+// and a LoadGovernor entry at its criticality. anything but kCritical gets skipped when the governor is shedding that
+// tier. the time they all take adds up until the next main loop collects it (takeBusyNanos()) so the governor sees
+// them too
+
+public final class MultiRateScheduler {
+
+    private static final ArrayList<RateTask> m_tasks = new ArrayList<>();
+
+    private static boolean m_installed = false;
+
+    private static long m_busyNanos = 0;                        // time spent in tasks since the last takeBusyNanos()
+
+
+
+    private MultiRateScheduler() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    private static final class RateTask {
+
+        private final String   m_name;
+        private final Runnable m_task;
+        private final double   m_periodSeconds;
+        private final double   m_offsetSeconds;
+        private final int      m_timingSlot;
+        private final int      m_governorSlot;
+
+        private double m_nextRunTime = Double.NaN;              // only used by the headless sim - see runDue()
+
+
+
+        private RateTask(String name, Runnable task, double periodSeconds, double offsetSeconds, Criticality criticality) {
+
+            m_name          = name;
+            m_task          = task;
+            m_periodSeconds = periodSeconds;
+            m_offsetSeconds = offsetSeconds;
+            m_timingSlot    = LoopTimer.registerOutOfCycle(name);
+            m_governorSlot  = LoadGovernor.register(name, criticality);
+        }
+
+
+
+        private void run() {
+
+            if ( ! LoadGovernor.shouldRun(m_governorSlot)) {
+                return;
+            }
+
+            long startTime = LoopTimer.start();
+
+            m_task.run();
+
+            LoopTimer.stop(m_timingSlot, startTime);
+
+            m_busyNanos += System.nanoTime() - startTime;
+        }
+    }
+
+
+
+    /**
+     * run task every period, offset from the start of the main loop's period by offset
+     *
+     * everything has to be registered before robotInit() calls install() - typically from a subsystem constructor
+     */
+    public static void register(String name, Runnable task, Measure<Time> period, Measure<Time> offset, Criticality criticality) {
+
+        if (m_installed) {
+            throw new IllegalStateException("MultiRateScheduler: " + name + " registered after install()");
+        }
+
+        m_tasks.add(new RateTask(name, task, period.in(Seconds), offset.in(Seconds), criticality));
+    }
+
+
+
+    /**
+     * hand every registered task to the robot's addPeriodic() - called once from robotInit()
+     */
+    public static void install(TimedRobot robot) {
+
+        double now = Timer.getFPGATimestamp();
+
+        for (RateTask task : m_tasks) {
+
+            robot.addPeriodic(task::run, task.m_periodSeconds, task.m_offsetSeconds);
+
+            task.m_nextRunTime = now + task.m_offsetSeconds;
+        }
+
+        m_installed = true;
+    }
+
+
+
+    /**
+     * how long the tasks have run for since the last call - the main loop collects this once a period for the
+     * LoadGovernor
+     */
+    public static long takeBusyNanos() {
+
+        long busyNanos = m_busyNanos;
+
+        m_busyNanos = 0;
+
+        return busyNanos;
+    }
+
+
+
+    /* Headless sim *****************************************************************************
+     ********************************************************************************************/
+
+    // when the next task comes due (FPGA seconds) - infinity if there's nothing registered
+
+    public static double getNextDueTime() {
+
+        double next = Double.POSITIVE_INFINITY;
+
+        for (RateTask task : m_tasks) {
+            next = Math.min(next, task.m_nextRunTime);
+        }
+
+        return next;
+    }
+
+
+
+    // run everything that's due at now, the same as TimedRobot would have
+
+    public static void runDue(double now) {
+
+        for (RateTask task : m_tasks) {
+
+            if (task.m_nextRunTime <= now) {
+
+                task.run();
+
+                task.m_nextRunTime += task.m_periodSeconds;
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package frc.robot;
+
+
+
+// lock-free ring buffer of odometry samples
+//
+// one thread (the odometry sampling Notifier) puts samples in and one thread (the main robot loop) takes them out -
+// that's the only way this is safe to use, it is NOT safe with more than one producer or more than one consumer
+//
+// each side only ever writes its own counter and the counters are volatile, so the producer's writes into the
+// arrays are visible to the consumer by the time it sees the write counter move - no locks, so the sampling
+// thread can never be held up waiting on the main loop (or the other way around)
+//
+// everything is allocated up front - samples are just doubles dropped into parallel arrays
+//
+// if the main loop falls far enough behind that the buffer fills up, new samples are dropped (and counted) rather
+// than overwriting ones the consumer might be reading
+
+public class OdometrySampleBuffer {
+
+    private final int m_mask;
+
+    private final double[] m_timestamps;        // FPGA time in seconds
+    private final double[] m_leftDistances;
+    private final double[] m_rightDistances;
+    private final double[] m_gyroRadians;
+
+    private volatile long m_writeCount = 0;     // only written by the producer
+    private volatile long m_readCount  = 0;     // only written by the consumer
+
+    private volatile long m_droppedCount = 0;   // only written by the producer
+
+    // the last sample taken out by poll() - consumer side only
+
+    private double m_polledTimestamp;
+    private double m_polledLeftDistance;
+    private double m_polledRightDistance;
+    private double m_polledGyroRadians;
+
+
+
+    /**
+     * capacity gets rounded up to the next power of 2 so we can mask instead of mod
+     */
+    public OdometrySampleBuffer(int capacity) {
+
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        m_mask = size - 1;
+
+        m_timestamps     = new double[size];
+        m_leftDistances  = new double[size];
+        m_rightDistances = new double[size];
+        m_gyroRadians    = new double[size];
+    }
+
+
+
+    /* Producer *********************************************************************************
+     ********************************************************************************************/
+
+    public boolean offer(double timestamp, double leftDistance, double rightDistance, double gyroRadians) {
+
+        long write = m_writeCount;
+
+        if (write - m_readCount > m_mask) {        // full
+            m_droppedCount++;
+            return false;
+        }
+
+        int index = (int)(write & m_mask);
+
+        m_timestamps[index]     = timestamp;
+        m_leftDistances[index]  = leftDistance;
+        m_rightDistances[index] = rightDistance;
+        m_gyroRadians[index]    = gyroRadians;
+
+        m_writeCount = write + 1;                   // publishes the sample to the consumer
+
+        return true;
+    }
+
+
+
+    /* Consumer *********************************************************************************
+     ********************************************************************************************/
+
+    /**
+     * take the oldest sample out of the buffer - returns false if there isn't one
+     *
+     * the sample values are then available from the getPolled...() methods until the next poll()
+     */
+    public boolean poll() {
+
+        long read = m_readCount;
+
+        if (read == m_writeCount) {                 // empty
+            return false;
+        }
+
+        int index = (int)(read & m_mask);
+
+        m_polledTimestamp     = m_timestamps[index];
+        m_polledLeftDistance  = m_leftDistances[index];
+        m_polledRightDistance = m_rightDistances[index];
+        m_polledGyroRadians   = m_gyroRadians[index];
+
+        m_readCount = read + 1;                     // hands the slot back to the producer
+
+        return true;
+    }
+
+
+
+    public double getPolledTimestamp() {
+
+        return m_polledTimestamp;
+    }
+
+
+
+    public double getPolledLeftDistance() {
+
+        return m_polledLeftDistance;
+    }
+
+
+
+    public double getPolledRightDistance() {
+
+        return m_polledRightDistance;
+    }
+
+
+
+    public double getPolledGyroRadians() {
+
+        return m_polledGyroRadians;
+    }
+
+
+
+    /* Stats ************************************************************************************
+     ********************************************************************************************/
+
+    public int size() {
+
+        return (int)(m_writeCount - m_readCount);
+    }
+
+
+
+    public long getDroppedCount() {
+
+        return m_droppedCount;
+    }
+}
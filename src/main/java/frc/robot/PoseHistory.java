@@ -0,0 +1,223 @@
+package frc.robot;
+
+import edu.wpi.first.math.MathUtil;
+
+
+
+// timestamped pose history
+//
+// every odometry update gets recorded here with its timestamp, the raw sensor readings that went into it and the
+// pose that came out of it - when a vision measurement shows up 30 - 100ms after the camera actually took the
+// picture, we can look back to where we thought we were at that moment instead of where we are now
+//
+// keeping the raw sensor readings means we can also fix up the past and then replay all of the odometry from that
+// point forward (see DriveSubsystem.addVisionMeasurement())
+//
+// fixed size, all primitive arrays allocated up front - once it's full, the oldest entry gets overwritten so the
+// history only ever covers the last (capacity * sample period) seconds
+//
+// entries are addressed oldest first: 0 is the oldest entry still in the history, size() - 1 is the newest
+
+public class PoseHistory {
+
+    private final int m_mask;
+
+    private final double[] m_timestamps;        // seconds, must be added in increasing order
+    private final double[] m_leftDistances;
+    private final double[] m_rightDistances;
+    private final double[] m_gyroRadians;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_headings;          // radians
+
+    private long m_addCount = 0;                // total entries ever added - the newest is at (m_addCount - 1)
+
+
+
+    /**
+     * capacity gets rounded up to the next power of 2 so we can mask instead of mod
+     */
+    public PoseHistory(int capacity) {
+
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        m_mask = size - 1;
+
+        m_timestamps     = new double[size];
+        m_leftDistances  = new double[size];
+        m_rightDistances = new double[size];
+        m_gyroRadians    = new double[size];
+        m_x              = new double[size];
+        m_y              = new double[size];
+        m_headings       = new double[size];
+    }
+
+
+
+    public void add(double timestamp, double leftDistance, double rightDistance, double gyroRadians,
+                    double x, double y, double headingRadians) {
+
+        int slot = (int)(m_addCount & m_mask);
+
+        m_timestamps[slot]     = timestamp;
+        m_leftDistances[slot]  = leftDistance;
+        m_rightDistances[slot] = rightDistance;
+        m_gyroRadians[slot]    = gyroRadians;
+        m_x[slot]              = x;
+        m_y[slot]              = y;
+        m_headings[slot]       = headingRadians;
+
+        m_addCount++;
+    }
+
+
+
+    public void clear() {
+
+        m_addCount = 0;
+    }
+
+
+
+    public int size() {
+
+        return (int)Math.min(m_addCount, m_mask + 1);
+    }
+
+
+
+    // turn an oldest-first index into the array slot
+
+    private int slot(int index) {
+
+        return (int)((m_addCount - size() + index) & m_mask);
+    }
+
+
+
+    /**
+     * index of the newest entry at or before timestamp - -1 if the timestamp is older than anything we have
+     */
+    public int indexAtOrBefore(double timestamp) {
+
+        int size = size();
+
+        if (size == 0 || timestamp < m_timestamps[slot(0)]) {
+            return -1;
+        }
+
+        int low  = 0;
+        int high = size - 1;
+
+        while (low < high) {                        // find the last entry with a timestamp <= the one we want
+
+            int mid = (low + high + 1) >>> 1;
+
+            if (m_timestamps[slot(mid)] <= timestamp) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+
+
+    /**
+     * fills in {x, y, heading degrees} for the pose at timestamp, interpolating between the entries on either side
+     *
+     * returns false (and leaves pose alone) if timestamp is older than the history - timestamps newer than the
+     * newest entry get the newest pose
+     */
+    public boolean getPoseAt(double timestamp, double[] pose) {
+
+        int index = indexAtOrBefore(timestamp);
+
+        if (index < 0) {
+            return false;
+        }
+
+        int before = slot(index);
+
+        if (index == size() - 1) {
+            pose[0] = m_x[before];
+            pose[1] = m_y[before];
+            pose[2] = Math.toDegrees(m_headings[before]);
+            return true;
+        }
+
+        int after = slot(index + 1);
+
+        double span     = m_timestamps[after] - m_timestamps[before];
+        double fraction = span > 0.0 ? (timestamp - m_timestamps[before]) / span : 0.0;
+
+        pose[0] = m_x[before] + (m_x[after] - m_x[before]) * fraction;
+        pose[1] = m_y[before] + (m_y[after] - m_y[before]) * fraction;
+        pose[2] = Math.toDegrees(m_headings[before]
+                                 + MathUtil.angleModulus(m_headings[after] - m_headings[before]) * fraction);
+
+        return true;
+    }
+
+
+
+    public void setPose(int index, double x, double y, double headingRadians) {
+
+        int slot = slot(index);
+
+        m_x[slot]        = x;
+        m_y[slot]        = y;
+        m_headings[slot] = headingRadians;
+    }
+
+
+
+    public double getTimestamp(int index) {
+
+        return m_timestamps[slot(index)];
+    }
+
+
+
+    public double getLeftDistance(int index) {
+
+        return m_leftDistances[slot(index)];
+    }
+
+
+
+    public double getRightDistance(int index) {
+
+        return m_rightDistances[slot(index)];
+    }
+
+
+
+    public double getGyroRadians(int index) {
+
+        return m_gyroRadians[slot(index)];
+    }
+
+
+
+    public double getX(int index) {
+
+        return m_x[slot(index)];
+    }
+
+
+
+    public double getY(int index) {
+
+        return m_y[slot(index)];
+    }
+
+
+
+    public double getHeadingRadians(int index) {
+
+        return m_headings[slot(index)];
+    }
+}
@@ -0,0 +1,94 @@
+package frc.robot;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Timer;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.VisionConstants;
+
+
+
+// a range to the target frozen at one moment
+//
+// the shooting sequence captures the range once when it starts and everything else in the sequence reads this
+// same snapshot - so the shooter speed, the shooter angle and anything we log all agree on what range we shot at
+// and we only ask vision once
+//
+// along with the range we keep when the range was measured and whether it was already too old to trust when we
+// captured it (or we never got one at all)
+
+public class RangeSnapshot {
+
+    private final DoubleSupplier m_rangeSupplier;
+    private final DoubleSupplier m_rangeTimestampSupplier;       // FPGA seconds when the range was measured
+
+    private double  m_range          = Double.NaN;
+    private double  m_rangeTimestamp = 0.0;
+    private double  m_captureTime    = 0.0;
+    private boolean m_stale          = true;
+
+    private long m_captureCount = 0;
+
+
+
+    public RangeSnapshot(DoubleSupplier rangeSupplier, DoubleSupplier rangeTimestampSupplier) {
+
+        m_rangeSupplier          = rangeSupplier;
+        m_rangeTimestampSupplier = rangeTimestampSupplier;
+    }
+
+
+
+    /**
+     * sample the range now and hold on to it until the next capture()
+     */
+    public void capture() {
+
+        m_captureTime    = Timer.getFPGATimestamp();
+        m_range          = m_rangeSupplier.getAsDouble();
+        m_rangeTimestamp = m_rangeTimestampSupplier.getAsDouble();
+
+        m_stale = Double.isNaN(m_range) || (m_captureTime - m_rangeTimestamp) > VisionConstants.kMaxRangeAge.in(Seconds);
+
+        m_captureCount++;
+    }
+
+
+
+    public double getRange() {
+
+        return m_range;
+    }
+
+
+
+    public double getRangeTimestamp() {
+
+        return m_rangeTimestamp;
+    }
+
+
+
+    // how old the range was when we captured it
+
+    public double getAgeAtCapture() {
+
+        return m_captureTime - m_rangeTimestamp;
+    }
+
+
+
+    public boolean isStale() {
+
+        return m_stale;
+    }
+
+
+
+    public long getCaptureCount() {
+
+        return m_captureCount;
+    }
+}
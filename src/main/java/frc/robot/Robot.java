@@ -4,10 +4,15 @@
 
 package frc.robot;
 
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Threads;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 
+import frc.robot.Constants.SchedulerConstants;
+import frc.robot.Constants.ThreadConstants;
+
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -29,6 +34,45 @@ public class Robot extends TimedRobot {
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
+
+    // the subsystems handed their device configuration to the orchestrator while the container was being built -
+    // this is the one place we wait for all of it
+    StartupOrchestrator.awaitCompletion();
+
+    // time every scheduled command - this has to come after the container makes its button bindings
+    LoopTimer.installCommandTiming();
+
+    // how many CAN writes the outputs have saved us
+    MultiRateScheduler.register("SparkMaxOutput.publishStats()", SparkMaxOutput::publishStats,
+                                SchedulerConstants.kStatsPeriod, SchedulerConstants.kStatsOffset, Criticality.kLow);
+
+    // how much of the bus the SparkMax status frames take up with the profiles they're on now
+    MultiRateScheduler.register("SparkMaxStatusFrames.publishBusEstimate()", SparkMaxStatusFrames::publishBusEstimate,
+                                SchedulerConstants.kStatsPeriod, SchedulerConstants.kStatusFrameStatsOffset, Criticality.kLow);
+
+    // how far behind the background worker is and whether it's had to drop anything
+    MultiRateScheduler.register("BackgroundWorker.publishStats()", BackgroundWorker::publishStats,
+                                SchedulerConstants.kStatsPeriod, SchedulerConstants.kWorkerStatsOffset, Criticality.kLow);
+
+    // everything that runs at its own rate instead of every main loop (the subsystems registered theirs when they
+    // were built) - has to come after everything is registered
+    MultiRateScheduler.install(this);
+
+    // logging and anything else that isn't control goes to the low priority worker - it has to be started before the
+    // main thread goes real time so it doesn't inherit that
+    BackgroundWorker.start();
+
+    // the control loop gets ahead of the garbage collector and everything else on the roboRIO - only on the real
+    // robot, the sim can't (and shouldn't) change the priority of a desktop process
+    if (isReal() && ! Threads.setCurrentThreadPriority(true, ThreadConstants.kMainThreadPriority)) {
+      DriverStation.reportWarning("Robot: couldn't raise the main thread to real time priority", false);
+    }
+  }
+
+
+  // lets the headless sim get at the subsystems to report on them
+  RobotContainer getRobotContainer() {
+    return m_robotContainer;
   }
 
 
@@ -41,11 +85,39 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotPeriodic() {
+    LoopTimer.beginCycle();
+
+    // read all of the hardware we care about once for this cycle
+    m_robotContainer.sampleSensors();
+
     // Runs the Scheduler.  This is responsible for polling buttons, adding newly-scheduled
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
     CommandScheduler.getInstance().run();
+
+    LoopTimer.endCycle();     // attributes this cycle's time and flags it if we went over budget
+  }
+
+
+  // the load governor has to see everything that shares a period, not just robotPeriodic() - so it gets the whole of
+  // TimedRobot's main loop (the mode periodic, robotPeriodic() and the dashboard / LiveWindow updates that come after
+  // it) plus whatever the MultiRateScheduler ran since the last one
+  @Override
+  protected void loopFunc() {
+    long startTime = System.nanoTime();
+
+    super.loopFunc();
+
+    governPeriod(startTime);
+  }
+
+
+  // package private - the headless sim makes the main loop calls itself and finishes each period with this
+  static void governPeriod(long loopStartNanos) {
+    long busyNanos = System.nanoTime() - loopStartNanos + MultiRateScheduler.takeBusyNanos();
+
+    LoadGovernor.update(busyNanos / 1.0e6);      // sheds low priority work in the next periods if this one ran long
   }
 
 
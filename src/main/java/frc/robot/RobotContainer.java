@@ -4,7 +4,9 @@
 
 package frc.robot;
 
+import frc.robot.Constants.IntakeConstants;
 import frc.robot.Constants.OperatorConstants;
+import frc.robot.Constants.ShooterConstants;
 import frc.robot.commands.Autos;
 import frc.robot.commands.ExampleCommand;
 import frc.robot.commands.ShootCommand;
@@ -17,11 +19,12 @@ import frc.robot.subsystems.ShooterAngleSubsystem;
 import frc.robot.subsystems.VisionSubsystem;
 import frc.robot.subsystems.ExampleSubsystem;
 import frc.robot.subsystems.LedSubsystem;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
-import java.util.function.DoubleSupplier; 
 import java.util.function.BooleanSupplier; 
 
 
@@ -48,18 +51,44 @@ public class RobotContainer {
 
   public final VisionSubsystem m_vision                       = new VisionSubsystem();
 
-  DoubleSupplier m_dynamicRange                               = () -> m_vision.getRangeToTarget();
-  BooleanSupplier m_dynamicAtShootSpeed                       = () -> m_shooterSubsystem.atShooterSpeed();
+  // the shot freezes the range here once when it starts instead of every consumer asking vision on its own
+
+  private final RangeSnapshot m_shotRange                     = new RangeSnapshot(() -> m_vision.getRangeToTarget(),
+                                                                                  () -> m_vision.getRangeTimestamp());
+
+  // no note sensor yet - the driver says when a note's loaded and a shot clears it, see IntakeConstants.kAssumeNoteHeld
+
+  private boolean m_noteLoaded                                = IntakeConstants.kAssumeNoteHeld;
+
+  BooleanSupplier m_noteHeld                                  = () -> m_noteLoaded;
+
+  // ready to feed is at speed or close enough that it will be by the time the note gets to the flywheel
+
+  BooleanSupplier m_dynamicAtShootSpeed                       = () -> m_shooterSubsystem.isReadyToFeed();
   BooleanSupplier m_dynamicAtShootAngle                       = () -> m_shooterAngleSubsystem.atShooterAngle();
 
-  public final Command m_shootCommand                         = new ShootCommand(m_shooterSubsystem, m_shooterAngleSubsystem, m_ledSubsystem,
-                                                                                 m_dynamicRange, m_dynamicAtShootSpeed, m_dynamicAtShootAngle).getShootCommand();
+  // speed and angle resampled onto one grid so a shot gets both from a single lookup
+
+  private final ShotSolutionTable m_shotTable                 = new ShotSolutionTable(m_shooterSubsystem.getShooterSpeedTable(),
+                                                                                      m_shooterAngleSubsystem.getShooterAngleTable());
+
+  public final Command m_shootCommand                         = new ShootCommand(m_shooterSubsystem, m_shooterAngleSubsystem, m_ledSubsystem, m_shotTable,
+                                                                                 m_shotRange, m_dynamicAtShootSpeed, m_dynamicAtShootAngle).getShootCommand();
 
   public final Command m_ledBounceCommand                     = new LedBounceCommand(m_ledSubsystem);
   public final Command m_ledIntakeRunningCommand              = new LedIntakeRunningCommand(m_ledSubsystem);
 
   public final Command m_spinCommand                          = new SpinInCircleCommand(m_drivetrainSubsystem, -0.3);
 
+  // when this is set it runs in autonomous instead of the normal auto - the headless sim uses it to try autos with
+  // different parameters
+
+  private Command m_autonomousOverride                        = null;
+
+  // pick the shooter spin-up strategy from the dashboard so they can be compared shot for shot
+
+  private final SendableChooser<SpinUpStrategy> m_spinUpChooser = new SendableChooser<>();
+
 
 
   /** The container for the robot. Contains subsystems, OI devices, and commands. */
@@ -76,8 +105,39 @@ public class RobotContainer {
                                                     m_drivetrainSubsystem));
 
     m_ledSubsystem.setDefaultCommand(m_ledBounceCommand);
+
+    // keep the flywheel spun up for the range we're at whenever we've got a note to shoot
+    m_shooterSubsystem.setDefaultCommand(
+        m_shooterSubsystem.readyModeCommand(() -> m_vision.getRangeToTarget(),
+                                            () -> m_vision.hasTarget(),
+                                            m_noteHeld));
+
+    for (SpinUpStrategy strategy : SpinUpStrategy.values()) {
+      m_spinUpChooser.addOption(strategy.name(), strategy);
+    }
+
+    m_spinUpChooser.setDefaultOption(ShooterConstants.kDefaultSpinUpStrategy.name(), ShooterConstants.kDefaultSpinUpStrategy);
+    m_spinUpChooser.onChange(m_shooterSubsystem::setSpinUpStrategy);
+
+    SmartDashboard.putData("Shooter/Spin-up Strategy", m_spinUpChooser);
+  }
+
+  /**
+   * Fill in the robot state frame for this cycle - every hardware value gets read once here and everything
+   * else reads it from the frame.  Called at the top of robotPeriodic() before the scheduler runs.
+   */
+  public void sampleSensors() {
+
+    RobotStateFrame frame = RobotStateFrame.getInstance();
+
+    frame.beginFrame();
+
+    m_drivetrainSubsystem.sampleSensors(frame);
+    m_shooterSubsystem.sampleSensors(frame);
   }
 
+
+
   /**
    * Use this method to define your trigger->command mappings.
    * 
@@ -101,6 +161,13 @@ public class RobotContainer {
 
     // schedule the shoot command when the Xbox controller's Y button is pressed
     m_driverController.y().onTrue(m_shootCommand);
+
+    // until there's a note sensor the driver toggles whether we've got a note with A - the note's gone once a shot
+    // finishes (or gets interrupted, we can't tell the difference) so ready mode stops holding the flywheel up. a shot
+    // that gave up because it had no range to shoot at never kicked, so we've still got it
+    m_driverController.a().onTrue(Commands.runOnce(() -> m_noteLoaded = ! m_noteLoaded));
+
+    new Trigger(m_shootCommand::isScheduled).onFalse(Commands.runOnce(() -> m_noteLoaded = m_noteLoaded && m_shotRange.isStale()));
     
     //Temporary button assignment.
     //Don't think the spin command has any actual use so it will be removed later on,
@@ -108,11 +175,24 @@ public class RobotContainer {
     m_driverController.x().whileTrue(m_spinCommand);
   }
   
+  // package private - only for the headless sim
+
+  void setAutonomousOverride(Command command) {
+
+    m_autonomousOverride = command;
+  }
+
+
+
   /**
    * Use this to pass the autonomous command to the main {@link Robot} class.
    * @return the command to run in autonomous
    */
   public Command getAutonomousCommand() {
+    if (m_autonomousOverride != null) {
+      return m_autonomousOverride;
+    }
+
     // An example command will be run in autonomous
     return Autos.exampleAuto(m_exampleSubsystem);
   }
@@ -0,0 +1,117 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+
+
+// robot state frame
+//
+// every hardware read (encoder velocities, motor outputs, battery voltage) is a JNI call and most of them end up as
+// CAN traffic - and the same values were getting read several times a cycle by different subsystems, commands and
+// dashboard sendables
+//
+// instead, each value gets read exactly once at the top of robotPeriodic() and stored here, and everyone else reads
+// it from here for the rest of the cycle - that also means every decision made in a cycle sees the same data
+//
+// this is just a bag of doubles that gets filled in place every cycle - nothing gets allocated
+//
+// the subsystems fill in their own parts in sampleSensors() (see RobotContainer.sampleSensors())
+
+public final class RobotStateFrame {
+
+    private static final RobotStateFrame m_instance = new RobotStateFrame();
+
+    private long   m_cycle;
+    private double m_timestamp;                 // FPGA seconds at the start of the cycle
+    private double m_batteryVoltage;
+
+    private double m_shooterVelocity;           // RPM
+    private double m_leftDriveOutput;           // -1 to 1
+    private double m_rightDriveOutput;
+
+
+
+    private RobotStateFrame() {}
+
+
+
+    public static RobotStateFrame getInstance() {
+
+        return m_instance;
+    }
+
+
+
+    // called at the top of the cycle before any of the subsystems fill in their parts
+
+    public void beginFrame() {
+
+        m_cycle++;
+
+        m_timestamp      = RobotController.getFPGATime() / 1.0e6;
+        m_batteryVoltage = RobotController.getBatteryVoltage();
+    }
+
+
+
+    /* Setters - only for the subsystems' sampleSensors() ***************************************
+     ********************************************************************************************/
+
+    public void setShooterVelocity(double rpm) {
+
+        m_shooterVelocity = rpm;
+    }
+
+
+
+    public void setDriveOutputs(double left, double right) {
+
+        m_leftDriveOutput  = left;
+        m_rightDriveOutput = right;
+    }
+
+
+
+    /* Getters **********************************************************************************
+     ********************************************************************************************/
+
+    public long getCycle() {
+
+        return m_cycle;
+    }
+
+
+
+    public double getTimestamp() {
+
+        return m_timestamp;
+    }
+
+
+
+    public double getBatteryVoltage() {
+
+        return m_batteryVoltage;
+    }
+
+
+
+    public double getShooterVelocity() {
+
+        return m_shooterVelocity;
+    }
+
+
+
+    public double getLeftDriveOutput() {
+
+        return m_leftDriveOutput;
+    }
+
+
+
+    public double getRightDriveOutput() {
+
+        return m_rightDriveOutput;
+    }
+}
@@ -0,0 +1,128 @@
+package frc.robot;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.ShooterConstants;
+
+
+
+// combined shot solution table
+//
+// the shooter speed and shooter angle each come from their own table in their own subsystem - that's fine for
+// calibrating them but when we actually take a shot, we want both answers for the same range at the same time
+//
+// at startup we walk the shootable range band (kMinShootRange to kMaxShootRange) in kShotTableRangeStep steps and
+// ask both tables for their answer at each step, keeping the results side by side
+//
+// since the steps are all the same size, finding the entry for a range is just some arithmetic to get the index -
+// no searching at all - and both the RPM and the angle come from that one index:
+//
+//     int shotIndex = m_shotTable.indexFor(range);
+//
+//     shooterRpm   = m_shotTable.getRpm(shotIndex);
+//     shooterAngle = m_shotTable.getAngleDegrees(shotIndex);
+//
+// ranges outside the band get the solution for the closest end of the band - a NaN range (no target) doesn't get a
+// solution at all, indexFor() hands back kNoSolution and it's up to the caller not to shoot
+
+public class ShotSolutionTable {
+
+    public static final int kNoSolution = -1;
+
+    private final double m_minRange;
+    private final double m_rangeStep;
+    private final double m_inverseRangeStep;        // multiply instead of divide on every lookup
+
+    private final int m_lastIndex;
+
+    private final double[] m_rpm;
+    private final double[] m_angleDegrees;
+
+
+
+    public ShotSolutionTable(InterpolatingTable shooterSpeedTable, InterpolatingTable shooterAngleTable) {
+
+        this(shooterSpeedTable, shooterAngleTable,
+             ShooterConstants.kMinShootRange.in(Meters),
+             ShooterConstants.kMaxShootRange.in(Meters),
+             ShooterConstants.kShotTableRangeStep.in(Meters));
+    }
+
+
+
+    public ShotSolutionTable(InterpolatingTable shooterSpeedTable, InterpolatingTable shooterAngleTable,
+                             double minRange, double maxRange, double rangeStep) {
+
+        if (maxRange <= minRange || rangeStep <= 0.0) {
+            throw new IllegalArgumentException("ShotSolutionTable: invalid range band " + minRange + " - " + maxRange + " step " + rangeStep);
+        }
+
+        m_minRange         = minRange;
+        m_rangeStep        = rangeStep;
+        m_inverseRangeStep = 1.0 / rangeStep;
+
+        // make sure the last entry lands on (or just past) maxRange
+
+        int numOfEntries = (int)Math.ceil((maxRange - minRange) * m_inverseRangeStep) + 1;
+
+        m_lastIndex    = numOfEntries - 1;
+        m_rpm          = new double[numOfEntries];
+        m_angleDegrees = new double[numOfEntries];
+
+        for (int i = 0 ; i < numOfEntries ; i++) {
+
+            double range = getRange(i);
+
+            m_rpm[i]          = shooterSpeedTable.get(range);
+            m_angleDegrees[i] = shooterAngleTable.get(range);
+        }
+    }
+
+
+
+    // round to the closest grid entry and clamp to the ends of the table
+    //
+    // a NaN range (no target) is kNoSolution - it used to fall through the clamp to the first entry and quietly shoot
+    // the minimum range solution
+
+    public int indexFor(double range) {
+
+        if (Double.isNaN(range)) {
+            return kNoSolution;
+        }
+
+        double position = (range - m_minRange) * m_inverseRangeStep + 0.5;
+
+        return (int)Math.max(0.0, Math.min(position, m_lastIndex));
+    }
+
+
+
+    public double getRpm(int index) {
+
+        return m_rpm[index];
+    }
+
+
+
+    public double getAngleDegrees(int index) {
+
+        return m_angleDegrees[index];
+    }
+
+
+
+    // the range the entry at index was resampled at
+
+    public double getRange(int index) {
+
+        return m_minRange + index * m_rangeStep;
+    }
+
+
+
+    public int size() {
+
+        return m_rpm.length;
+    }
+}
@@ -0,0 +1,298 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.Preferences;
+
+import com.revrobotics.CANSparkBase.IdleMode;
+import com.revrobotics.CANSparkBase.SoftLimitDirection;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.SparkPIDController;
+
+
+
+// declarative SparkMax configuration that only rewrites the controller when it has to
+//
+// we used to restoreFactoryDefaults() and then re-send every setting on every boot - each one of those is a blocking
+// CAN transaction so it all adds up, and it adds up again every time a brownout reboots the roboRIO mid-match
+//
+// instead, we declare what the controller should look like (from Constants) and read back what it's actually got
+// saved. both get boiled down to a fingerprint and if they match, there's nothing to do. if they don't, we do the full
+// reset, send everything and burn it to flash so it matches next time.
+//
+// the fingerprint covers every setting this class can declare that can be read back - inversion, follower or not,
+// PID slot 0 and its output range, idle mode, both ramp rates and the soft limits. anything not declared is held to
+// its factory default, so somebody changing (say) the idle mode from the REV Hardware Client gets caught and put back
+//
+// a couple of settings can't be read back from a SparkMax (the smart current limit and which controller a follower
+// is following) - those always get sent, they're a single write each
+//
+// that's all it guarantees - anything this class doesn't know about (the other PID slots, encoder conversion factors,
+// voltage compensation, CAN frame periods) isn't checked and isn't reset if the fingerprint matches. anything like
+// that a subsystem sets has to be sent by the subsystem every boot
+//
+// the time a full configuration took gets saved in Preferences so when we skip it, we can log how much time we saved
+//
+//     new SparkMaxConfig().inverted(true)
+//                         .smartCurrentLimit(40)
+//                         .pid(p, i, d, ff, izone)
+//                         .outputRange(0.0, 1.0)
+//                         .apply("Shooter", m_shooterMotor);
+
+public class SparkMaxConfig {
+
+    private boolean     m_inverted       = false;
+    private int         m_currentLimit   = 0;               // 0 - leave the factory limit
+    private CANSparkMax m_leader         = null;
+    private boolean     m_invertFollower = false;
+
+    private double m_p          = 0.0;                      // PID slot 0 - factory defaults unless pid() is called
+    private double m_i          = 0.0;
+    private double m_d          = 0.0;
+    private double m_ff         = 0.0;
+    private double m_izone      = 0.0;
+    private double m_outputMin  = -1.0;
+    private double m_outputMax  = 1.0;
+
+    private IdleMode m_idleMode          = IdleMode.kCoast;     // factory defaults unless set
+    private double   m_openLoopRamp      = 0.0;
+    private double   m_closedLoopRamp    = 0.0;
+    private boolean  m_forwardLimitOn    = false;
+    private double   m_forwardLimit      = 0.0;
+    private boolean  m_reverseLimitOn    = false;
+    private double   m_reverseLimit      = 0.0;
+
+
+
+    public SparkMaxConfig inverted(boolean inverted) {
+
+        m_inverted = inverted;
+        return this;
+    }
+
+
+
+    public SparkMaxConfig smartCurrentLimit(int amps) {
+
+        m_currentLimit = amps;
+        return this;
+    }
+
+
+
+    public SparkMaxConfig follow(CANSparkMax leader, boolean invert) {
+
+        m_leader         = leader;
+        m_invertFollower = invert;
+        return this;
+    }
+
+
+
+    public SparkMaxConfig pid(double p, double i, double d, double ff, double izone) {
+
+        m_p     = p;
+        m_i     = i;
+        m_d     = d;
+        m_ff    = ff;
+        m_izone = izone;
+        return this;
+    }
+
+
+
+    public SparkMaxConfig outputRange(double min, double max) {
+
+        m_outputMin = min;
+        m_outputMax = max;
+        return this;
+    }
+
+
+
+    public SparkMaxConfig idleMode(IdleMode mode) {
+
+        m_idleMode = mode;
+        return this;
+    }
+
+
+
+    public SparkMaxConfig rampRates(double openLoopSeconds, double closedLoopSeconds) {
+
+        m_openLoopRamp   = openLoopSeconds;
+        m_closedLoopRamp = closedLoopSeconds;
+        return this;
+    }
+
+
+
+    // soft limits are in rotations (or whatever the encoder's position conversion factor makes them)
+
+    public SparkMaxConfig softLimits(double reverse, double forward) {
+
+        m_reverseLimitOn = true;
+        m_reverseLimit   = reverse;
+        m_forwardLimitOn = true;
+        m_forwardLimit   = forward;
+        return this;
+    }
+
+
+
+    /* Fingerprints *****************************************************************************
+     ********************************************************************************************/
+
+    // the SparkMax keeps its parameters as 32 bit floats so that's what we compare - otherwise something like
+    // 0.00006 would never match what we read back
+
+    private static long mix(long hash, double value) {
+
+        return hash * 31 + Float.floatToIntBits((float)value);
+    }
+
+
+
+    private static long mix(long hash, boolean value) {
+
+        return hash * 31 + (value ? 1 : 0);
+    }
+
+
+
+    private long declaredFingerprint() {
+
+        long hash = 17;
+
+        hash = mix(hash, m_inverted);
+        hash = mix(hash, m_leader != null);
+        hash = mix(hash, m_p);
+        hash = mix(hash, m_i);
+        hash = mix(hash, m_d);
+        hash = mix(hash, m_ff);
+        hash = mix(hash, m_izone);
+        hash = mix(hash, m_outputMin);
+        hash = mix(hash, m_outputMax);
+        hash = mix(hash, m_idleMode == IdleMode.kBrake);
+        hash = mix(hash, m_openLoopRamp);
+        hash = mix(hash, m_closedLoopRamp);
+        hash = mix(hash, m_forwardLimitOn);
+        hash = mix(hash, m_forwardLimit);
+        hash = mix(hash, m_reverseLimitOn);
+        hash = mix(hash, m_reverseLimit);
+
+        return hash;
+    }
+
+
+
+    // every one of these is a blocking read from the controller - keep it in step with declaredFingerprint()
+
+    private static long readFingerprint(CANSparkMax motor) {
+
+        SparkPIDController pid = motor.getPIDController();
+
+        long hash = 17;
+
+        hash = mix(hash, motor.getInverted());
+        hash = mix(hash, motor.isFollower());
+        hash = mix(hash, pid.getP());
+        hash = mix(hash, pid.getI());
+        hash = mix(hash, pid.getD());
+        hash = mix(hash, pid.getFF());
+        hash = mix(hash, pid.getIZone());
+        hash = mix(hash, pid.getOutputMin());
+        hash = mix(hash, pid.getOutputMax());
+        hash = mix(hash, motor.getIdleMode() == IdleMode.kBrake);
+        hash = mix(hash, motor.getOpenLoopRampRate());
+        hash = mix(hash, motor.getClosedLoopRampRate());
+        hash = mix(hash, motor.isSoftLimitEnabled(SoftLimitDirection.kForward));
+        hash = mix(hash, motor.getSoftLimit(SoftLimitDirection.kForward));
+        hash = mix(hash, motor.isSoftLimitEnabled(SoftLimitDirection.kReverse));
+        hash = mix(hash, motor.getSoftLimit(SoftLimitDirection.kReverse));
+
+        return hash;
+    }
+
+
+
+    /* Apply ************************************************************************************
+     ********************************************************************************************/
+
+    /**
+     * make the controller match this configuration - only resets, rewrites and flashes it if what it has saved is
+     * different from what we declared
+     *
+     * returns true if the full configuration had to be done
+     */
+    public boolean apply(String name, CANSparkMax motor) {
+
+        String timeKey = "SparkMaxConfig/" + name + " Full Config ms";
+
+        long startTime = System.nanoTime();
+
+        boolean matches = readFingerprint(motor) == declaredFingerprint();
+
+        if (matches) {
+
+            applyUnreadable(motor);
+
+            double checkMs = (System.nanoTime() - startTime) / 1.0e6;
+
+            // if we've never timed a full configuration on this robot there's nothing honest to compare against
+
+            String saved = Preferences.containsKey(timeKey)
+                         ? "about " + Math.max(0.0, Preferences.getDouble(timeKey, 0.0) - checkMs) + " ms"
+                         : "unknown (no full configuration timed yet)";
+
+            System.out.println("SparkMaxConfig: " + name + " config unchanged - skipped reset/flash, took " + checkMs
+                               + " ms, saved " + saved);
+            return false;
+        }
+
+        motor.restoreFactoryDefaults();
+
+        motor.setInverted(m_inverted);
+
+        SparkPIDController pid = motor.getPIDController();
+
+        pid.setP(m_p);
+        pid.setI(m_i);
+        pid.setD(m_d);
+        pid.setFF(m_ff);
+        pid.setIZone(m_izone);
+        pid.setOutputRange(m_outputMin, m_outputMax);
+
+        motor.setIdleMode(m_idleMode);
+        motor.setOpenLoopRampRate(m_openLoopRamp);
+        motor.setClosedLoopRampRate(m_closedLoopRamp);
+        motor.setSoftLimit(SoftLimitDirection.kForward, (float)m_forwardLimit);
+        motor.enableSoftLimit(SoftLimitDirection.kForward, m_forwardLimitOn);
+        motor.setSoftLimit(SoftLimitDirection.kReverse, (float)m_reverseLimit);
+        motor.enableSoftLimit(SoftLimitDirection.kReverse, m_reverseLimitOn);
+
+        applyUnreadable(motor);
+
+        motor.burnFlash();                      // so the fingerprint matches next boot
+
+        double fullMs = (System.nanoTime() - startTime) / 1.0e6;
+
+        Preferences.setDouble(timeKey, fullMs);
+
+        System.out.println("SparkMaxConfig: " + name + " config changed - reset, reconfigured and flashed in " + fullMs + " ms");
+        return true;
+    }
+
+
+
+    // the settings we can't read back so they get sent every time
+
+    private void applyUnreadable(CANSparkMax motor) {
+
+        if (m_currentLimit > 0) {
+            motor.setSmartCurrentLimit(m_currentLimit);
+        }
+
+        if (m_leader != null) {
+            motor.follow(m_leader, m_invertFollower);
+        }
+    }
+}
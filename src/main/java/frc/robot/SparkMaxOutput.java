@@ -0,0 +1,208 @@
+package frc.robot;
+
+import edu.wpi.first.units.Measure;
+import edu.wpi.first.units.Time;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import static edu.wpi.first.units.Units.*;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.SparkPIDController;
+
+import frc.robot.Constants.CanConstants;
+
+
+
+// motor output with setpoint deduplication
+//
+// every set() or setReference() on a SparkMax puts a frame on the CAN bus even if it's the exact same value we sent
+// last cycle - which is most of the time (think of a shooter sitting at its target RPM or the drivetrain with the
+// joysticks held still)
+//
+// this remembers the last control type and value that actually went out and only sends a new one when:
+//
+//   - the control type changes
+//   - the value moves more than epsilon away from what we last sent
+//   - the keep-alive period has gone by since the last send (so the controller always hears from us regularly)
+//
+// stopMotor() always goes out - we never want to suppress a stop
+//
+// every output counts what it sent and what it suppressed so we can see how much bus traffic this saves - the
+// totals for all outputs go to the dashboard from publishStats()
+
+public class SparkMaxOutput {
+
+    private static final int kMaxOutputs = 16;
+
+    private static final SparkMaxOutput[] m_outputs = new SparkMaxOutput[kMaxOutputs];
+    private static int m_outputCount = 0;
+
+    private final CANSparkMax m_motor;
+    private final SparkPIDController m_pidController;
+
+    private final double m_epsilon;
+    private final long m_keepAliveMicros;
+
+    private final String m_sentKey;
+    private final String m_suppressedKey;
+
+    private CANSparkMax.ControlType m_lastControlType = null;      // null until we've sent something
+    private double m_lastValue    = 0.0;
+    private long   m_lastSendTime = 0;
+
+    private long m_sentCount       = 0;
+    private long m_suppressedCount = 0;
+
+
+
+    public SparkMaxOutput(String name, CANSparkMax motor, double epsilon) {
+
+        this(name, motor, epsilon, CanConstants.kMotorKeepAlivePeriod);
+    }
+
+
+
+    public SparkMaxOutput(String name, CANSparkMax motor, double epsilon, Measure<Time> keepAlive) {
+
+        m_motor           = motor;
+        m_pidController   = motor.getPIDController();
+        m_epsilon         = epsilon;
+        m_keepAliveMicros = (long)(keepAlive.in(Seconds) * 1.0e6);
+
+        m_sentKey       = "CAN Writes/" + name + "/Sent";
+        m_suppressedKey = "CAN Writes/" + name + "/Suppressed";
+
+        if (m_outputCount < kMaxOutputs) {
+            m_outputs[m_outputCount++] = this;
+        }
+    }
+
+
+
+    // decides if a write needs to go out and does the bookkeeping either way
+
+    private boolean shouldSend(CANSparkMax.ControlType controlType, double value) {
+
+        long now = RobotController.getFPGATime();
+
+        if (controlType == m_lastControlType
+            && Math.abs(value - m_lastValue) <= m_epsilon
+            && (now - m_lastSendTime) < m_keepAliveMicros) {
+
+            m_suppressedCount++;
+            return false;
+        }
+
+        m_lastControlType = controlType;
+        m_lastValue       = value;
+        m_lastSendTime    = now;
+
+        m_sentCount++;
+        return true;
+    }
+
+
+
+    /**
+     * duty cycle output (-1 to 1) - same as CANSparkMax.set()
+     *
+     * this has the same shape as a DoubleConsumer so it can be handed straight to DifferentialDrive
+     */
+    public void set(double dutyCycle) {
+
+        if (shouldSend(CANSparkMax.ControlType.kDutyCycle, dutyCycle)) {
+            m_motor.set(dutyCycle);
+        }
+    }
+
+
+
+    /**
+     * closed loop setpoint - same as SparkPIDController.setReference()
+     */
+    public void setReference(double value, CANSparkMax.ControlType controlType) {
+
+        if (shouldSend(controlType, value)) {
+            m_pidController.setReference(value, controlType);
+        }
+    }
+
+
+
+    public void stopMotor() {
+
+        m_motor.stopMotor();
+
+        m_lastControlType = CANSparkMax.ControlType.kDutyCycle;
+        m_lastValue       = 0.0;
+        m_lastSendTime    = RobotController.getFPGATime();
+
+        m_sentCount++;
+    }
+
+
+
+    /**
+     * forget what we last sent so the next write always goes out - use this after anything that could have changed
+     * the controller behind our back (like a factory reset)
+     */
+    public void invalidate() {
+
+        m_lastControlType = null;
+    }
+
+
+
+    // the last value we actually sent - for duty cycle this is the same as CANSparkMax.get() without the JNI call
+
+    public double get() {
+
+        return m_lastValue;
+    }
+
+
+
+    public CANSparkMax.ControlType getControlType() {
+
+        return m_lastControlType;
+    }
+
+
+
+    public long getSentCount() {
+
+        return m_sentCount;
+    }
+
+
+
+    public long getSuppressedCount() {
+
+        return m_suppressedCount;
+    }
+
+
+
+    // runs from the MultiRateScheduler at kStatsPeriod (see Robot)
+
+    public static void publishStats() {
+
+        long totalSent       = 0;
+        long totalSuppressed = 0;
+
+        for (int i = 0 ; i < m_outputCount ; i++) {
+
+            SparkMaxOutput output = m_outputs[i];
+
+            SmartDashboard.putNumber(output.m_sentKey,       output.m_sentCount);
+            SmartDashboard.putNumber(output.m_suppressedKey, output.m_suppressedCount);
+
+            totalSent       += output.m_sentCount;
+            totalSuppressed += output.m_suppressedCount;
+        }
+
+        SmartDashboard.putNumber("CAN Writes/Total Sent",       totalSent);
+        SmartDashboard.putNumber("CAN Writes/Total Suppressed", totalSuppressed);
+    }
+}
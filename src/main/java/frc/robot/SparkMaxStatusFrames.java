@@ -0,0 +1,178 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import com.revrobotics.CANSparkMax;
+
+import frc.robot.Constants.CanConstants;
+
+
+
+// keeps track of which status frame profile every SparkMax is running
+//
+// each subsystem registers its controllers with a starting profile once they've been configured and can switch a
+// controller to a different profile at any time (like slowing the kicker's frames down when we're not shooting) -
+// switching to the profile a controller is already on doesn't send anything
+//
+// a switch is up to seven blocking CAN writes so requestProfile() doesn't do it on the caller's thread - it gets
+// handed to the BackgroundWorker, which works through them in order so the last one requested always wins. the
+// main loop (commands, periodic()) should only ever use requestProfile()
+//
+// an estimate of how much of the CAN bus all of the status frames from all of the registered controllers take up
+// goes to the dashboard from the MultiRateScheduler at kStatsPeriod (see Robot)
+//
+// the estimate is just (frames per second * bits per frame) / bitrate - it doesn't include our own control frames
+// or anything from other devices on the bus so it's a floor, not the whole story
+
+public final class SparkMaxStatusFrames {
+
+    private static final int kMaxControllers = 16;
+
+    private static final CANSparkMax[] m_controllers          = new CANSparkMax[kMaxControllers];
+    private static final String[] m_names                     = new String[kMaxControllers];
+    private static final SparkMaxStatusProfile[] m_profiles   = new SparkMaxStatusProfile[kMaxControllers];
+
+    private static int m_controllerCount = 0;
+
+
+
+    private SparkMaxStatusFrames() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    /**
+     * register a controller and apply its starting profile
+     *
+     * safe to call from the startup configuration threads - the frame periods go out without holding the lock so
+     * controllers being configured at the same time don't wait on each other
+     */
+    public static void register(String name, CANSparkMax controller, SparkMaxStatusProfile profile) {
+
+        int index;
+
+        synchronized (SparkMaxStatusFrames.class) {
+
+            if (m_controllerCount >= kMaxControllers) {
+                System.err.println("SparkMaxStatusFrames: too many controllers - not managing " + name);
+                return;
+            }
+
+            index = m_controllerCount++;
+
+            m_controllers[index] = controller;
+            m_names[index]       = name;
+        }
+
+        sendFramePeriods(controller, profile);
+
+        synchronized (SparkMaxStatusFrames.class) {
+            m_profiles[index] = profile;
+        }
+    }
+
+
+
+    /**
+     * switch a registered controller to a different profile on the BackgroundWorker - safe from the main loop, it
+     * never waits on the CAN writes
+     */
+    public static void requestProfile(CANSparkMax controller, SparkMaxStatusProfile profile) {
+
+        if ( ! BackgroundWorker.submit(() -> setProfile(controller, profile))) {
+            BackgroundWorker.logError("SparkMaxStatusFrames: worker queue full - dropped a profile switch to " + profile.name());
+        }
+    }
+
+
+
+    /**
+     * switch a registered controller to a different profile right now - does nothing if it's already on that profile
+     *
+     * this blocks on the CAN writes - only for threads that can afford to wait, the main loop uses requestProfile()
+     */
+    public static void setProfile(CANSparkMax controller, SparkMaxStatusProfile profile) {
+
+        synchronized (SparkMaxStatusFrames.class) {
+
+            int index = indexOf(controller);
+
+            if (index < 0 || m_profiles[index] == null || m_profiles[index] == profile) {
+                return;
+            }
+
+            m_profiles[index] = profile;
+        }
+
+        sendFramePeriods(controller, profile);          // outside the lock so the dashboard never waits on the bus
+    }
+
+
+
+    private static int indexOf(CANSparkMax controller) {
+
+        for (int i = 0 ; i < m_controllerCount ; i++) {
+
+            if (m_controllers[i] == controller) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+
+    private static void sendFramePeriods(CANSparkMax controller, SparkMaxStatusProfile profile) {
+
+        for (int frame = 0 ; frame < profile.getNumOfFrames() ; frame++) {
+            controller.setPeriodicFramePeriod(profile.getFrame(frame), profile.getPeriodMs(frame));
+        }
+    }
+
+
+
+    // percentage of the bus the status frames from all of the registered controllers use with their current profiles
+
+    public static synchronized double getEstimatedUtilization() {
+
+        double framesPerSecond = 0.0;
+
+        for (int i = 0 ; i < m_controllerCount ; i++) {
+
+            if (m_profiles[i] != null) {                // null while it's still being registered
+                framesPerSecond += m_profiles[i].getFramesPerSecond();
+            }
+        }
+
+        return 100.0 * framesPerSecond * CanConstants.kCanBitsPerFrame / CanConstants.kCanBitrate;
+    }
+
+
+
+    // same thing if every registered controller was still at the factory rates
+
+    public static synchronized double getFactoryUtilization() {
+
+        return 100.0 * m_controllerCount * SparkMaxStatusProfile.kDefault.getFramesPerSecond()
+               * CanConstants.kCanBitsPerFrame / CanConstants.kCanBitrate;
+    }
+
+
+
+    // runs from the MultiRateScheduler at kStatsPeriod (see Robot)
+
+    public static synchronized void publishBusEstimate() {
+
+        SmartDashboard.putNumber("CAN/Status Frame Utilization %",         getEstimatedUtilization());
+        SmartDashboard.putNumber("CAN/Factory Status Frame Utilization %", getFactoryUtilization());
+
+        for (int i = 0 ; i < m_controllerCount ; i++) {
+
+            if (m_profiles[i] != null) {
+                SmartDashboard.putString("CAN/Profiles/" + m_names[i], m_profiles[i].name());
+            }
+        }
+    }
+}
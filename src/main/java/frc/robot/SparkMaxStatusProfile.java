@@ -0,0 +1,94 @@
+package frc.robot;
+
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+
+
+
+// SparkMax periodic status frame profiles
+//
+// every SparkMax sends a set of status frames on its own at a fixed rate whether anyone reads them or not - after
+// restoreFactoryDefaults() that is the factory rates below (kDefault) for every controller on the robot
+//
+// what's in each frame (from the REV docs):
+//
+//   status 0 - applied output, faults, sticky faults, is follower     (followers also use their leader's status 0!)
+//   status 1 - velocity, temperature, bus voltage, output current
+//   status 2 - position
+//   status 3 - analog sensor
+//   status 4 - alternate encoder
+//   status 5 - duty cycle absolute encoder position
+//   status 6 - duty cycle absolute encoder velocity
+//
+// we don't use any analog, alternate or absolute encoders so frames 3 - 6 can always be slowed way down - after
+// that, each profile keeps only what that kind of motor actually needs fast
+//
+// periods are in milliseconds
+
+public enum SparkMaxStatusProfile {
+
+    //                    status  0    1    2    3    4    5    6
+    kDefault(                    10,  20,  20,  50,  20, 200, 200),     // factory rates - just for comparison
+
+    kDriveLeader(                10,  50,  50, 500, 500, 500, 500),     // followers need status 0 fast, we use the DIO encoders so 1 and 2 can slow down
+
+    kFollower(                  100, 500, 500, 500, 500, 500, 500),     // nobody reads a follower's telemetry
+
+    kVelocityCritical(           10,  10, 500, 500, 500, 500, 500),     // flywheel - velocity as fast as we can get it, position never
+
+    kRioVelocityLoop(            10,   5, 500, 500, 500, 500, 500),     // flywheel with the velocity loop on the roboRIO - velocity every loop
+
+    kActive(                     20,  50, 500, 500, 500, 500, 500),     // something we're running but don't close a loop on (kicker during a shot)
+
+    kIdle(                      100, 250, 500, 500, 500, 500, 500);     // something that isn't doing anything right now
+
+
+
+    private static final PeriodicFrame[] kFrames = { PeriodicFrame.kStatus0, PeriodicFrame.kStatus1, PeriodicFrame.kStatus2,
+                                                     PeriodicFrame.kStatus3, PeriodicFrame.kStatus4, PeriodicFrame.kStatus5,
+                                                     PeriodicFrame.kStatus6 };
+
+    private final int[] m_periodsMs;
+
+
+
+    SparkMaxStatusProfile(int... periodsMs) {
+
+        m_periodsMs = periodsMs;
+    }
+
+
+
+    public int getNumOfFrames() {
+
+        return kFrames.length;
+    }
+
+
+
+    public PeriodicFrame getFrame(int index) {
+
+        return kFrames[index];
+    }
+
+
+
+    public int getPeriodMs(int index) {
+
+        return m_periodsMs[index];
+    }
+
+
+
+    // how many status frames a second one controller puts on the bus with this profile
+
+    public double getFramesPerSecond() {
+
+        double framesPerSecond = 0.0;
+
+        for (int periodMs : m_periodsMs) {
+            framesPerSecond += 1000.0 / periodMs;
+        }
+
+        return framesPerSecond;
+    }
+}
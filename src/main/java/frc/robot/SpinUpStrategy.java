@@ -0,0 +1,18 @@
+package frc.robot;
+
+
+
+// how the shooter gets the flywheel from wherever it is up to a new target
+//
+//   kPid                - hand the target straight to the velocity loop and let it get there (the loop's small gains
+//                         make that slow from a stop)
+//   kBangBangHandoff    - full output until the flywheel is within kBangBangHandoffBand of the target, then hand off
+//                         to the velocity loop to settle it
+//
+// the shooter keeps spin-up time and overshoot for each strategy separately so we can compare them
+
+public enum SpinUpStrategy {
+
+    kPid,
+    kBangBangHandoff
+}
@@ -0,0 +1,279 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.StartupConstants;
+
+
+
+// startup orchestrator
+//
+// configuring a motor controller is a string of blocking CAN transactions and every subsystem used to do all of its
+// devices one after another on the main thread, then the next subsystem did the same - so boot time was the sum of
+// every device's configuration time
+//
+// most devices don't care about each other so there's no reason they can't be configured at the same time - the
+// subsystems hand their device configuration here as named tasks and they run on a small pool of threads. a task can
+// name other tasks it has to come after (like a follower after its leader) and it won't start until those are done
+//
+//     StartupOrchestrator.submit("Drive Left Front", () -> { ... });
+//     StartupOrchestrator.submit("Drive Left Rear",  () -> { ... }, "Drive Left Front");
+//
+// robotInit() calls awaitCompletion() once the RobotContainer is built - that's the only place anything waits, and
+// it reports how long each device took and how long we'd have spent doing them one after another
+//
+// awaitCompletion() doesn't return until every task is done, however long that takes. a task that's still running
+// could be in the middle of a factory reset or a flash burn on a controller the robot loop would be driving, and the
+// tasks also set up the SparkMaxOutputs the loop writes through - waiting on the futures is what makes everything the
+// tasks wrote visible to the main thread. anything that takes longer than kConfigSlowWarning gets reported while we
+// carry on waiting (REVLib's calls all time out on their own so a missing device makes this slow, not stuck)
+//
+// only the main thread submits tasks and waits on them - a task only touches its own devices, anything it shares
+// with other tasks (like SparkMaxStatusFrames) has to be thread safe
+//
+// a task that throws gets reported to the driver station and everything else carries on - tasks that come after it
+// still run. that includes Errors - a vendor library that can't find its native code throws UnsatisfiedLinkError or
+// NoClassDefFoundError, and that device failing shouldn't take the whole robot program down with it
+
+public final class StartupOrchestrator {
+
+    private static final ArrayList<DeviceTask> m_tasks = new ArrayList<>();
+
+    private static ExecutorService m_executor = null;           // created on the first submit, shut down after waiting
+    private static long m_firstSubmitTime     = 0;
+
+
+
+    private StartupOrchestrator() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    private static final class DeviceTask {
+
+        private final String m_name;
+
+        private CompletableFuture<Void> m_future;
+
+        private volatile double  m_latencyMs = 0.0;             // how long the task itself ran
+        private volatile boolean m_failed    = false;
+
+
+
+        private DeviceTask(String name) {
+
+            m_name = name;
+        }
+    }
+
+
+
+    /**
+     * queue up configuration for a device - it starts as soon as a thread is free and everything named in after has
+     * finished
+     *
+     * anything named in after has to have been submitted already (which also means there can't be any loops)
+     */
+    public static void submit(String name, Runnable configure, String... after) {
+
+        if (m_executor == null) {
+
+            m_firstSubmitTime = System.nanoTime();
+
+            AtomicInteger threadCount = new AtomicInteger();
+
+            m_executor = Executors.newFixedThreadPool(StartupConstants.kConfigThreads, runnable -> {
+
+                Thread thread = new Thread(runnable, "StartupConfig-" + threadCount.incrementAndGet());
+
+                thread.setDaemon(true);                 // never hold the robot program open
+                return thread;
+            });
+        }
+
+        CompletableFuture<?>[] dependencies = new CompletableFuture<?>[after.length];
+
+        for (int i = 0 ; i < after.length ; i++) {
+
+            DeviceTask dependency = find(after[i]);
+
+            if (dependency == null) {
+                throw new IllegalArgumentException("StartupOrchestrator: " + name + " has to come after " + after[i]
+                                                   + " which hasn't been submitted");
+            }
+
+            dependencies[i] = dependency.m_future;
+        }
+
+        DeviceTask task = new DeviceTask(name);
+
+        task.m_future = CompletableFuture.allOf(dependencies).thenRunAsync(() -> run(task, configure), m_executor);
+
+        m_tasks.add(task);
+    }
+
+
+
+    private static DeviceTask find(String name) {
+
+        for (DeviceTask task : m_tasks) {
+
+            if (task.m_name.equals(name)) {
+                return task;
+            }
+        }
+
+        return null;
+    }
+
+
+
+    // runs on one of the pool threads - catches everything so the future always completes normally
+
+    private static void run(DeviceTask task, Runnable configure) {
+
+        long startTime = System.nanoTime();
+
+        try {
+            configure.run();
+        }
+        catch (Throwable e) {
+            task.m_failed = true;
+            DriverStation.reportError("StartupOrchestrator: configuring " + task.m_name + " failed: " + e, e.getStackTrace());
+        }
+
+        task.m_latencyMs = (System.nanoTime() - startTime) / 1.0e6;
+    }
+
+
+
+    /**
+     * wait for everything that's been submitted to finish and report how long each device took - complains about
+     * anything still going after kConfigSlowWarning but doesn't return until it's done too
+     *
+     * returns true if every task finished without failing
+     */
+    public static boolean awaitCompletion() {
+
+        if (m_tasks.isEmpty()) {
+            return true;
+        }
+
+        long startTime = System.nanoTime();
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[m_tasks.size()];
+
+        for (int i = 0 ; i < futures.length ; i++) {
+            futures[i] = m_tasks.get(i).m_future;
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures);
+
+        boolean interrupted = false;
+
+        try {
+            all.get((long)StartupConstants.kConfigSlowWarning.in(Milliseconds), TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            reportSlow();
+        }
+        catch (InterruptedException e) {
+            interrupted = true;
+        }
+        catch (ExecutionException e) {
+            // run() catches everything a task throws so this means something went wrong in here, not in a task
+            DriverStation.reportError("StartupOrchestrator: waiting on device configuration failed: " + e.getCause(), e.getStackTrace());
+        }
+
+        // no matter what happened above, nothing goes on until every task is done - and a failure here shouldn't stop
+        // the report, the report says which ones didn't make it
+
+        try {
+            all.join();
+        }
+        catch (CompletionException | CancellationException e) {
+            DriverStation.reportError("StartupOrchestrator: waiting on device configuration failed: " + e, e.getStackTrace());
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        long endTime = System.nanoTime();
+
+        boolean allGood = report((endTime - startTime) / 1.0e6, (endTime - m_firstSubmitTime) / 1.0e6);
+
+        m_executor.shutdown();
+        m_executor = null;
+
+        m_tasks.clear();
+
+        return allGood;
+    }
+
+
+
+    private static void reportSlow() {
+
+        for (DeviceTask task : m_tasks) {
+
+            if ( ! task.m_future.isDone()) {
+                DriverStation.reportError("StartupOrchestrator: configuring " + task.m_name + " is taking more than "
+                                          + StartupConstants.kConfigSlowWarning.in(Seconds) + " s - still waiting on it", false);
+            }
+        }
+    }
+
+
+
+    // wait is how long robotInit() actually sat in awaitCompletion(), total is from the first submit - the rest of the
+    // RobotContainer got built while the first devices were being configured
+
+    private static boolean report(double waitMs, double totalMs) {
+
+        boolean allGood  = true;
+        double  serialMs = 0.0;
+
+        for (DeviceTask task : m_tasks) {
+
+            String status;
+
+            if (task.m_failed || task.m_future.isCompletedExceptionally()) {
+                status  = "FAILED";
+                allGood = false;
+            } else {
+                status = "ok";
+            }
+
+            serialMs += task.m_latencyMs;
+
+            SmartDashboard.putNumber("Startup/" + task.m_name + " ms", task.m_latencyMs);
+
+            System.out.println("StartupOrchestrator: " + task.m_name + " " + task.m_latencyMs + " ms " + status);
+        }
+
+        SmartDashboard.putNumber("Startup/Wait ms",   waitMs);
+        SmartDashboard.putNumber("Startup/Total ms",  totalMs);
+        SmartDashboard.putNumber("Startup/Serial ms", serialMs);
+
+        System.out.println("StartupOrchestrator: configured " + m_tasks.size() + " devices in " + totalMs + " ms (robotInit() waited "
+                           + waitMs + " ms) - one at a time would have been about " + serialMs + " ms");
+
+        return allGood;
+    }
+}
@@ -22,6 +22,8 @@ public class Utilities {
     // this routine could get pretty smart - it could find a range in the table closest to the current range and use that or
     // we could get even smarter and actually interpolate a speed or angle based on the spacing of the various values and
     // calculate speeds or angles for the "in betweens"
+    //
+    // which is what InterpolatingTable does - the shooter tables use that now
 
     public static double lookupByValue(double inValue, double[][] array) {
       // lookup values from an order list
@@ -0,0 +1,145 @@
+package frc.robot;
+
+import java.lang.invoke.VarHandle;
+
+
+
+// latest vision sample, handed from the vision ingestion thread to the main robot loop
+//
+// there is only ever one sample in here - the newest one - and it gets overwritten in place every time vision sends
+// us something new, so nothing gets allocated to pass a sample along
+//
+// it works like a "seqlock": the writer bumps the sequence number to an odd value before changing the sample and to
+// the next even value when it's done, the reader grabs the sequence number, copies the sample and checks the sequence
+// number didn't move while it was copying - if it did, the writer got in the middle of it and the reader tries again
+//
+// neither side ever waits on a lock, the writer never waits at all and the reader only gives up (and keeps the copy
+// it already had) if the writer keeps getting in the way - which at vision rates basically never happens
+//
+// exactly one writer thread and one reader thread
+
+public class VisionSampleSlot {
+
+    private static final int kMaxReadAttempts = 4;
+
+    private volatile long m_sequence = 0;       // odd while the writer is part way through a write
+
+    // the shared sample - only written by the writer, only touched between the sequence number checks
+
+    private boolean m_hasTarget;
+    private double  m_rangeMeters;
+    private double  m_yawDegrees;
+    private double  m_captureTimestamp;         // FPGA seconds - when the camera took the picture
+
+    // the reader's copy of the last good sample
+
+    private long    m_readSequence = 0;
+    private boolean m_readHasTarget;
+    private double  m_readRangeMeters = Double.NaN;
+    private double  m_readYawDegrees;
+    private double  m_readCaptureTimestamp;
+
+
+
+    /* Writer ***********************************************************************************
+     ********************************************************************************************/
+
+    public void write(boolean hasTarget, double rangeMeters, double yawDegrees, double captureTimestamp) {
+
+        long sequence = m_sequence;
+
+        m_sequence = sequence + 1;              // odd - write in progress
+        VarHandle.storeStoreFence();            // keep the sample writes after the sequence number change
+
+        m_hasTarget        = hasTarget;
+        m_rangeMeters      = rangeMeters;
+        m_yawDegrees       = yawDegrees;
+        m_captureTimestamp = captureTimestamp;
+
+        m_sequence = sequence + 2;              // even again - volatile write publishes the sample
+    }
+
+
+
+    /* Reader ***********************************************************************************
+     ********************************************************************************************/
+
+    /**
+     * copy the latest sample into the reader's copy - returns true if there was a new sample since the last read
+     *
+     * never blocks - if it can't get a clean copy in a few tries it keeps what it had
+     */
+    public boolean read() {
+
+        for (int attempt = 0 ; attempt < kMaxReadAttempts ; attempt++) {
+
+            long sequence = m_sequence;
+
+            if ((sequence & 1) != 0) {          // writer is in the middle of it
+                Thread.onSpinWait();
+                continue;
+            }
+
+            if (sequence == m_readSequence) {   // nothing new
+                return false;
+            }
+
+            boolean hasTarget        = m_hasTarget;
+            double  rangeMeters      = m_rangeMeters;
+            double  yawDegrees       = m_yawDegrees;
+            double  captureTimestamp = m_captureTimestamp;
+
+            VarHandle.loadLoadFence();          // make sure we've read the sample before we check the sequence again
+
+            if (sequence == m_sequence) {
+
+                m_readSequence         = sequence;
+                m_readHasTarget        = hasTarget;
+                m_readRangeMeters      = rangeMeters;
+                m_readYawDegrees       = yawDegrees;
+                m_readCaptureTimestamp = captureTimestamp;
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+
+    // sequence number of the sample the reader has - goes up by 2 for every new sample, 0 means we've never had one
+
+    public long getSequence() {
+
+        return m_readSequence;
+    }
+
+
+
+    public boolean hasTarget() {
+
+        return m_readHasTarget;
+    }
+
+
+
+    public double getRangeMeters() {
+
+        return m_readRangeMeters;
+    }
+
+
+
+    public double getYawDegrees() {
+
+        return m_readYawDegrees;
+    }
+
+
+
+    public double getCaptureTimestamp() {
+
+        return m_readCaptureTimestamp;
+    }
+}
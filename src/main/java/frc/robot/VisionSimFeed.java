@@ -0,0 +1,71 @@
+package frc.robot;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Notifier;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.VisionConstants;
+
+
+
+// stand-in for the vision coprocessor during simulation
+//
+// in simulation the robot's NetworkTables instance is the server so we just publish target data to it from our own
+// thread, exactly like the coprocessor would over the network - the vision subsystem can't tell the difference and
+// goes through its normal listener path
+//
+// we keep the old random range behavior: ranges run between the min and max shooting range and can go the tolerance
+// value above or below that band so we get some out of range values too
+
+public class VisionSimFeed {
+
+    private final static double kRangeTolerance = 1;
+    private final static double kMinRange       = ShooterConstants.kMinShootRange.in(Meters);
+    private final static double kMaxRange       = ShooterConstants.kMaxShootRange.in(Meters);
+
+    private final DoubleArrayPublisher m_targetPublisher;
+
+    private final double[] m_targetData = new double[VisionConstants.kTargetDataLength];
+
+    private final Notifier m_notifier = new Notifier(this::publishFrame);
+
+
+
+    public VisionSimFeed(NetworkTableInstance instance) {
+
+        m_targetPublisher = instance.getDoubleArrayTopic(VisionConstants.kTargetDataTopic).publish();
+
+        m_notifier.setName("VisionSimFeed");
+    }
+
+
+
+    public void start() {
+
+        m_notifier.startPeriodic(VisionConstants.kSimFeedPeriod.in(Seconds));
+    }
+
+
+
+    public void stop() {
+
+        m_notifier.stop();
+    }
+
+
+
+    private void publishFrame() {
+
+        double randomRange = Math.random() * (kMaxRange - kMinRange + 2 * kRangeTolerance) + (kMinRange - kRangeTolerance);
+
+        m_targetData[VisionConstants.kTargetDataHasTarget] = 1.0;
+        m_targetData[VisionConstants.kTargetDataRange]     = randomRange;
+        m_targetData[VisionConstants.kTargetDataYaw]       = Math.random() * 20.0 - 10.0;
+        m_targetData[VisionConstants.kTargetDataLatency]   = VisionConstants.kSimFeedLatency.in(Milliseconds);
+
+        m_targetPublisher.set(m_targetData);
+    }
+}
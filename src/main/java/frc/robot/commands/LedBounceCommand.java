@@ -2,6 +2,8 @@
 package frc.robot.commands;
 
 import frc.robot.Constants.LedConstants;
+import frc.robot.Criticality;
+import frc.robot.LoadGovernor;
 import frc.robot.subsystems.LedSubsystem;
 import edu.wpi.first.wpilibj2.command.Command;
 
@@ -16,6 +18,8 @@ public class LedBounceCommand extends Command {
     private static int       m_bounceIndex;
     private static int       m_bounceDirection;
 
+    private final int m_governorSlot = LoadGovernor.register("LedBounceCommand", Criticality.kLow);
+
 
     public LedBounceCommand(LedSubsystem subsystem) {
         m_ledSubsystem = subsystem;
@@ -55,6 +59,12 @@ public class LedBounceCommand extends Command {
     @Override
     public void execute() {
 
+        // the first thing to go when the loop is running long - the animation just pauses
+
+        if ( ! LoadGovernor.shouldRun(m_governorSlot)) {
+            return;
+        }
+
         // slow us down
 
         m_paceCount--;
@@ -4,6 +4,8 @@ package frc.robot.commands;
 import frc.robot.subsystems.LedSubsystem;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants.LedConstants;
+import frc.robot.Criticality;
+import frc.robot.LoadGovernor;
 
 public class LedIntakeRunningCommand extends Command {
 
@@ -13,6 +15,8 @@ public class LedIntakeRunningCommand extends Command {
     private static int       m_paceCount;
     private static int       m_intakeLedIndex;
 
+    private final int m_governorSlot = LoadGovernor.register("LedIntakeRunningCommand", Criticality.kLow);
+
 
     public LedIntakeRunningCommand(LedSubsystem subsystem) {
         m_ledSubsystem = subsystem;
@@ -37,6 +41,12 @@ public class LedIntakeRunningCommand extends Command {
     @Override
     public void execute() {
 
+        // the first thing to go when the loop is running long - the animation just pauses
+
+        if ( ! LoadGovernor.shouldRun(m_governorSlot)) {
+            return;
+        }
+
         // slow us down
 
         m_paceCount--;
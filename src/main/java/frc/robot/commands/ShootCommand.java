@@ -4,6 +4,8 @@
 
 package frc.robot.commands;
 
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 
@@ -12,11 +14,13 @@ import frc.robot.subsystems.LedSubsystem;
 import frc.robot.subsystems.ShooterAngleSubsystem;
 
 import frc.robot.Constants.*;
+import frc.robot.BackgroundWorker;
+import frc.robot.RangeSnapshot;
+import frc.robot.ShotSolutionTable;
 
 import static edu.wpi.first.units.Units.*;
 
 import java.util.function.BooleanSupplier;
-import java.util.function.DoubleSupplier;
 
 
 
@@ -29,7 +33,15 @@ public class ShootCommand extends Command {
 
     LedSubsystem            m_ledSubsystem;
 
-    DoubleSupplier          m_rangeSupplier;
+    RangeSnapshot           m_rangeSnapshot;        // captured once when the shot starts - everything in the shot reads this
+
+    ShotSolutionTable       m_shotTable;
+
+    int                     m_shotIndex;            // the shot table entry for the range we got when the shot started
+
+    boolean                 m_shotAborted;          // no range we can trust - the rest of the sequence doesn't run
+
+    double                  m_shotStartTime;        // FPGA seconds - for timing how long until we actually kick
 
     BooleanSupplier         m_stabilizeShooterSpeedCheck;
     BooleanSupplier         m_stabilizeShooterAngleCheck;
@@ -37,10 +49,12 @@ public class ShootCommand extends Command {
 
 
     
-    public ShootCommand(ShooterSubsystem shooterSub, ShooterAngleSubsystem shooterAngleSub, LedSubsystem ledSub,
-                        DoubleSupplier rangeSupplier, BooleanSupplier speedSupplier, BooleanSupplier angleSupplier) {
+    public ShootCommand(ShooterSubsystem shooterSub, ShooterAngleSubsystem shooterAngleSub, LedSubsystem ledSub, ShotSolutionTable shotTable,
+                        RangeSnapshot rangeSnapshot, BooleanSupplier speedSupplier, BooleanSupplier angleSupplier) {
     
-        m_rangeSupplier = rangeSupplier;            // the actual ranmging call gets made very late in the low level shooting routines
+        m_rangeSnapshot = rangeSnapshot;            // the actual ranging call gets made when the shot sequence starts running
+
+        m_shotTable     = shotTable;
 
         m_stabilizeShooterSpeedCheck = speedSupplier;
         m_stabilizeShooterAngleCheck = angleSupplier;
@@ -56,6 +70,41 @@ public class ShootCommand extends Command {
 
 
 
+    private void resolveShotSolution() {
+
+        m_shotStartTime = Timer.getFPGATimestamp();
+
+        m_rangeSnapshot.capture();
+
+        double range = m_rangeSnapshot.getRange();
+
+        m_shotIndex = m_shotTable.indexFor(range);
+
+        // a stale range (or none at all) could be anywhere - shooting it would just throw the note away, so don't
+
+        m_shotAborted = m_rangeSnapshot.isStale() || m_shotIndex == ShotSolutionTable.kNoSolution;
+
+        if (m_shotAborted) {
+            BackgroundWorker.log("resolveShotSolution(" + range + ", STALE) - no usable range, not shooting");
+            return;
+        }
+
+        BackgroundWorker.log("resolveShotSolution(" + range + ") = "
+                             + m_shotTable.getRpm(m_shotIndex) + " RPM, " + m_shotTable.getAngleDegrees(m_shotIndex) + " degrees");
+    }
+
+
+
+    // how long from the start of the shot until the note actually gets kicked - mostly the shooter spin-up, which is
+    // the part of the shot we can do something about (and can measure in the sim)
+
+    private void recordTimeToKick() {
+
+        SmartDashboard.putNumber("Shooter/Shot Time To Kick ms", (Timer.getFPGATimestamp() - m_shotStartTime) * 1000.0);
+    }
+
+
+
     public Command getShootCommand() {
 
         return Commands.sequence(
@@ -65,84 +114,100 @@ public class ShootCommand extends Command {
         //
         // if we wanted a totally automated shooting sequence, we'd need to incorporate those aspects
 
-            Commands.parallel(
-                // for each of the range-related commands, we pass the range supplier function which is called in the low level routines
-                // to get the range not at the time the command is created but when it is actually run
+            // capture the range once and look up the speed and angle for it together so both the shooter and the
+            // angle are working from the same answer - the range is read when the command actually runs, not when
+            // it is created
 
-                m_shooterSubsystem.setShooterSpeedByRangeCommand(m_rangeSupplier),
-                m_shooterAngleSubsystem.setShooterAngleByRangeCommand(m_rangeSupplier)
-            ),
+            Commands.runOnce(() -> resolveShotSolution()),
 
-            Commands.parallel(
+            // everything after this only happens if we got a range to shoot at - unless() is checked when the
+            // sequence gets here, after the solution has been resolved
 
-                // wait until the angle and shooter speed have stabilized with a timeout
-                //
-                // these commands will keep running until things stabilize or the timeout expires
-                //
-                // they should happen before the timeout during normal operation
-                //
-                // if they don't reach the target speed or angle, the probably should abort the command because it means
-                // something went wrong - what, who knows?  Can the robot recover - who knows?
-                //
-                // right now the command just get cancelled when the timeout happens and the rest of the sequence continues
+            Commands.sequence(
+
+                Commands.parallel(
+                    m_shooterSubsystem.setShooterRpmCommand(() -> m_shotTable.getRpm(m_shotIndex)),
+                    m_shooterAngleSubsystem.setShooterAngleCommand(() -> m_shotTable.getAngleDegrees(m_shotIndex))
+                ),
+
+                Commands.parallel(
 
-                Commands.deadline(
+                    // wait until the angle and shooter speed have stabilized with a timeout
+                    //
+                    // these commands will keep running until things stabilize or the timeout expires
+                    //
+                    // they should happen before the timeout during normal operation
+                    //
+                    // if they don't reach the target speed or angle, the probably should abort the command because it means
+                    // something went wrong - what, who knows?  Can the robot recover - who knows?
+                    //
+                    // right now the command just get cancelled when the timeout happens and the rest of the sequence continues
+
+                    Commands.deadline(
                     
-                    Commands.parallel(
+                        Commands.parallel(
                         
-                        Commands.waitSeconds(ShooterConstants.kShooterStabilizeTime.in(Seconds)).until(m_stabilizeShooterSpeedCheck),
-                        Commands.waitSeconds(ShooterAngleConstants.kShooterAngleStabilizeTime.in(Seconds)).until(m_stabilizeShooterSpeedCheck)
-                    ),
-                    Commands.sequence(
-                        m_ledSubsystem.LedPreShootInitCommand(),               // get the LEDs ready for the pre-shoot sequence
-                        m_ledSubsystem.LedPreShootCommand()
+                            Commands.waitSeconds(ShooterConstants.kShooterStabilizeTime.in(Seconds)).until(m_stabilizeShooterSpeedCheck),
+                            Commands.waitSeconds(ShooterAngleConstants.kShooterAngleStabilizeTime.in(Seconds)).until(m_stabilizeShooterSpeedCheck)
+                        ),
+                        Commands.sequence(
+                            m_ledSubsystem.LedPreShootInitCommand(),               // get the LEDs ready for the pre-shoot sequence
+                            m_ledSubsystem.LedPreShootCommand()
+                        )
+                        //Commands.waitSeconds(ShooterConstants.kShooterStabilizeTime.in(Seconds)).until(m_preShootLedPattern)
                     )
-                    //Commands.waitSeconds(ShooterConstants.kShooterStabilizeTime.in(Seconds)).until(m_preShootLedPattern)
-                )
-            ),
-            
-            m_ledSubsystem.LedShootCommand(),               // set the LEDs to indicate shooting
 
-            m_shooterSubsystem.kickerMotorOnCommand(),
+                // if ready mode already had the flywheel at speed (and the angle is there), there's nothing to wait for -
+                // go straight to feeding the note
 
-            // for now, we're just letting the kicker run for some period of time
-            //
-            // all we want is to feed the note into the shooter so it actually gets launched
-            //
-            // doing this based on some amount of time is generally fine but we could optimize this by watching the
-            // note sensor and only running it until the note clears the sensor (at which point we assume it has been launched)
-            //
-            // this would make this command slightly more responsive and not *have* to run for the entire
-            // kKickerRunTime period and would reduce the run time of this command to the minimum it took
-            // to spin up and set the shooter abngle and then to actually get the note clear of the robot.
-            //
-            // Note that we're assuming that once we the note sensor we can stop but we might actually need to have a
-            // "short" delay so we don't stop things too soon - the routine to check the note will be running
-            // at a 50Hz frequency.  This could result in us seeing the note sensor go clear and if the note doesn't
-            // complete shooting within 20ms, we could in fact end up *not* actually completely shooting the note
-            // but shutting down the shooter motor prematurely and either just "plopping" out the note as a result of
-            // a winding down shooter motor or possibly even jamming the shooter with a partially shot note)
-            //
-            // That would not be "good".
-            //
-            // How would we deal with that?  Probably through some empirical testing.
+                ).unless(() -> m_stabilizeShooterSpeedCheck.getAsBoolean() && m_stabilizeShooterAngleCheck.getAsBoolean()),
+            
+                m_ledSubsystem.LedShootCommand(),               // set the LEDs to indicate shooting
 
-            Commands.waitSeconds(ShooterConstants.kKickerRunTime.in(Seconds)),
+                Commands.runOnce(() -> recordTimeToKick()),
 
-            Commands.parallel(
+                m_shooterSubsystem.kickerMotorOnCommand(),
 
-                // cleanup from the shoot sequence
+                // for now, we're just letting the kicker run for some period of time
+                //
+                // all we want is to feed the note into the shooter so it actually gets launched
+                //
+                // doing this based on some amount of time is generally fine but we could optimize this by watching the
+                // note sensor and only running it until the note clears the sensor (at which point we assume it has been launched)
+                //
+                // this would make this command slightly more responsive and not *have* to run for the entire
+                // kKickerRunTime period and would reduce the run time of this command to the minimum it took
+                // to spin up and set the shooter abngle and then to actually get the note clear of the robot.
+                //
+                // Note that we're assuming that once we the note sensor we can stop but we might actually need to have a
+                // "short" delay so we don't stop things too soon - the routine to check the note will be running
+                // at a 50Hz frequency.  This could result in us seeing the note sensor go clear and if the note doesn't
+                // complete shooting within 20ms, we could in fact end up *not* actually completely shooting the note
+                // but shutting down the shooter motor prematurely and either just "plopping" out the note as a result of
+                // a winding down shooter motor or possibly even jamming the shooter with a partially shot note)
                 //
-                // we only run the cleanup routine for a certain amount of time and then exit
+                // That would not be "good".
                 //
-                // no need for more LED cleanup since the default LED will take over after the last LED command (this one) completes
-                m_ledSubsystem.LedPostShootCommand().withTimeout(LedConstants.kLedPostShootTime.in(Seconds)),
+                // How would we deal with that?  Probably through some empirical testing.
 
-                Commands.sequence(
-                    m_shooterSubsystem.shooterMotorOffCommand(),
-                    m_shooterSubsystem.kickerMotorOffCommand()
+                Commands.waitSeconds(ShooterConstants.kKickerRunTime.in(Seconds)),
+
+                Commands.parallel(
+
+                    // cleanup from the shoot sequence
+                    //
+                    // we only run the cleanup routine for a certain amount of time and then exit
+                    //
+                    // no need for more LED cleanup since the default LED will take over after the last LED command (this one) completes
+                    m_ledSubsystem.LedPostShootCommand().withTimeout(LedConstants.kLedPostShootTime.in(Seconds)),
+
+                    Commands.sequence(
+                        m_shooterSubsystem.shooterMotorOffCommand(),
+                        m_shooterSubsystem.kickerMotorOffCommand()
+                    )
                 )
-            )
+
+            ).unless(() -> m_shotAborted)
 
             // at this point the motors for the shooter and the kicker would be off
             //
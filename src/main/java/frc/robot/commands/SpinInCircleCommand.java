@@ -2,6 +2,7 @@ package frc.robot.commands;
 
 
 import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.BackgroundWorker;
 import frc.robot.subsystems.DriveSubsystem;
 
 
@@ -23,6 +24,6 @@ public class SpinInCircleCommand extends Command{
     }
 
     public void end(boolean interrupted){
-        System.out.println("Spin Command has finished!");
+        BackgroundWorker.log("Spin Command has finished!");
     }
 }  
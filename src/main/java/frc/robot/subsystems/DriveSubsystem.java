@@ -2,6 +2,7 @@ package frc.robot.subsystems;
 
 
 import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.drive.DifferentialDrive;
 import edu.wpi.first.wpilibj.AnalogGyro;
@@ -17,11 +18,15 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj.simulation.AnalogGyroSim;
 
 import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.DifferentialDriveOdometry;
 
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
 
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
@@ -37,8 +42,22 @@ import com.revrobotics.CANSparkLowLevel.MotorType;
 
 //These are classes within the constants file
 import frc.robot.Robot;
+import frc.robot.Criticality;
+import frc.robot.LoadGovernor;
+import frc.robot.LoopTimer;
+import frc.robot.MultiRateScheduler;
+import frc.robot.RobotStateFrame;
+import frc.robot.SparkMaxConfig;
+import frc.robot.SparkMaxOutput;
+import frc.robot.SparkMaxStatusFrames;
+import frc.robot.SparkMaxStatusProfile;
+import frc.robot.StartupOrchestrator;
+import frc.robot.DifferentialOdometry;
+import frc.robot.OdometrySampleBuffer;
+import frc.robot.PoseHistory;
 import frc.robot.Constants.RobotConstants;
 import frc.robot.Constants.DrivetrainConstants;
+import frc.robot.Constants.SchedulerConstants;
 
 
 
@@ -62,7 +81,13 @@ public class DriveSubsystem extends SubsystemBase {
     // private final RelativeEncoder m_leftEncoder  = m_leftFrontMotor.getEncoder();
     // private final RelativeEncoder m_rightEncoder = m_leftFrontMotor.getEncoder();
 
-    private final DifferentialDrive m_diffDrive = new DifferentialDrive(m_leftFrontMotor, m_rightFrontMotor);    // setup motor following later
+    // DifferentialDrive sends both sides a new duty cycle every single cycle - going through the outputs means
+    // only values that actually changed (or the periodic keep-alive) make it onto the CAN bus
+
+    private final SparkMaxOutput m_leftFrontOutput  = new SparkMaxOutput("Drive Left",  m_leftFrontMotor,  DrivetrainConstants.kDriveOutputEpsilon);
+    private final SparkMaxOutput m_rightFrontOutput = new SparkMaxOutput("Drive Right", m_rightFrontMotor, DrivetrainConstants.kDriveOutputEpsilon);
+
+    private final DifferentialDrive m_diffDrive = new DifferentialDrive(m_leftFrontOutput::set, m_rightFrontOutput::set);    // setup motor following later
 
 
     // for now, just use the typical values for various jitters from the example in the doc - would measure this in real life using 'sysinfo' on the
@@ -100,6 +125,42 @@ public class DriveSubsystem extends SubsystemBase {
                                                                                  // 1M from wall, midfield, pointing towards other alliance
                                                                                  new Pose2d(1.35, 5.55, new Rotation2d(Math.PI)));
 
+    // same starting pose as above but kept as plain doubles that get updated in place - see DifferentialOdometry
+
+    private DifferentialOdometry m_fastOdometry = new DifferentialOdometry(getGyroRadians(),
+                                                                           m_leftEncoder.getDistance(),
+                                                                           m_rightEncoder.getDistance(),
+                                                                           1.35, 5.55, Math.PI);
+
+    // the pose goes out to NetworkTables every cycle from a preallocated array - the publisher copies it out through JNI
+    // so this doesn't create anything new
+
+    private final double[] m_poseArray                = new double[3];
+    private final DoubleArrayPublisher m_posePublisher = NetworkTableInstance.getDefault().getDoubleArrayTopic("Drive/Pose").publish();
+
+    private final int m_posePublishGovernorSlot        = LoadGovernor.register("Drive/Pose", Criticality.kNormal);
+
+
+    // high rate odometry sampling
+    //
+    // the Notifier runs on its own thread and drops timestamped encoder and gyro readings into the sample buffer and
+    // periodic() pulls them all out and integrates each one - fast turns get integrated in 5ms steps instead of 20ms
+    // steps without making the main loop any longer
+
+    private final OdometrySampleBuffer m_odometrySamples = new OdometrySampleBuffer(DrivetrainConstants.kOdometrySampleBufferSize);
+
+    private final Notifier m_odometryNotifier = new Notifier(this::sampleOdometry);
+
+
+    // every odometry update goes into the pose history so late vision measurements can be applied where the robot
+    // was when the picture was taken - the replay odometry is only used to re-run history after a correction
+
+    private final PoseHistory m_poseHistory             = new PoseHistory(DrivetrainConstants.kPoseHistorySize);
+    private final DifferentialOdometry m_replayOdometry = new DifferentialOdometry(0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+
+    private long m_visionMeasurementsApplied  = 0;
+    private long m_visionMeasurementsRejected = 0;
+
 
     private Rotation2d m_rotation      = new Rotation2d(0.0);                // simulation starting rotation - 0.0 is downfield to other alliance wall
 
@@ -108,6 +169,9 @@ public class DriveSubsystem extends SubsystemBase {
 
     private boolean m_driveTypeErrorPrinted = false;
 
+    private final int m_periodicTimingSlot    = LoopTimer.register("DriveSubsystem.periodic()");
+    private final int m_simPeriodicTimingSlot = LoopTimer.register("DriveSubsystem.simulationPeriodic()");
+
 
 
     public DriveSubsystem() {
@@ -119,12 +183,9 @@ public class DriveSubsystem extends SubsystemBase {
         // it's OK to use the various configuration tools to come up with the settings we want but once we have
         // those settings, we want make sure those settings are in use every time
         //
-        // to get there, we'll reset the controllers to factory defaults and then explicitly set what we need
-
-        m_leftFrontMotor.restoreFactoryDefaults();
-        m_leftRearMotor.restoreFactoryDefaults();
-        m_rightFrontMotor.restoreFactoryDefaults();
-        m_rightRearMotor.restoreFactoryDefaults();
+        // to get there, each controller gets declared configuration that is checked against what the controller has
+        // saved - if they're different, it gets reset to factory defaults, we explicitly set what we need and save
+        // it (see SparkMaxConfig) - if they're the same, we don't waste boot time resending all of it
 
         // since the motors are facing in the opposite direction, one side needs to be reversed
         //
@@ -134,8 +195,23 @@ public class DriveSubsystem extends SubsystemBase {
         //
         // we only need to set the right front motor as the rear motors will all be set to follow their
         // the front motors on their respective side
+        //
+        // all of this gets handed to the StartupOrchestrator so the controllers are configured at the same time as
+        // each other (and everything else on the robot) - robotInit() waits for them to finish
+
+        StartupOrchestrator.submit("Drive Left Front", () -> {
+
+            new SparkMaxConfig().apply("Drive Left Front", m_leftFrontMotor);
+            SparkMaxStatusFrames.register("Drive Left Front", m_leftFrontMotor, SparkMaxStatusProfile.kDriveLeader);
+            m_leftFrontOutput.stopMotor();            // just a safety thing - they should be stopped on instantiation
+        });
 
-        m_rightFrontMotor.setInverted(true);
+        StartupOrchestrator.submit("Drive Right Front", () -> {
+
+            new SparkMaxConfig().inverted(true).apply("Drive Right Front", m_rightFrontMotor);
+            SparkMaxStatusFrames.register("Drive Right Front", m_rightFrontMotor, SparkMaxStatusProfile.kDriveLeader);
+            m_rightFrontOutput.stopMotor();
+        });
 
 
         // since we have two motors on each side, we'll make the rear motors follow the fronts
@@ -144,12 +220,22 @@ public class DriveSubsystem extends SubsystemBase {
         //
         // this makes multiple motors useable with the differential drive class since it excpects only
         // a single motor controller for each "side"
+        //
+        // the followers wait until their leader has been configured
+        //
+        // only send the status frames we actually use at the rate we need them - the followers hardly need any
 
-        m_leftRearMotor.follow(m_leftFrontMotor);
-        m_rightRearMotor.follow(m_rightFrontMotor);
-        
-        m_leftFrontMotor.stopMotor();                     // just a safety thing - they should be stopped on instantiation
-        m_rightFrontMotor.stopMotor();
+        StartupOrchestrator.submit("Drive Left Rear", () -> {
+
+            new SparkMaxConfig().follow(m_leftFrontMotor, false).apply("Drive Left Rear", m_leftRearMotor);
+            SparkMaxStatusFrames.register("Drive Left Rear", m_leftRearMotor, SparkMaxStatusProfile.kFollower);
+        }, "Drive Left Front");
+
+        StartupOrchestrator.submit("Drive Right Rear", () -> {
+
+            new SparkMaxConfig().follow(m_rightFrontMotor, false).apply("Drive Right Rear", m_rightRearMotor);
+            SparkMaxStatusFrames.register("Drive Right Rear", m_rightRearMotor, SparkMaxStatusProfile.kFollower);
+        }, "Drive Right Front");
 
         m_leftEncoder.setDistancePerPulse(DrivetrainConstants.kDrivetrainWheelDiameter.in(Meters) * Math.PI / DrivetrainConstants.kDrivetrainEncoderCPR);
         m_rightEncoder.setDistancePerPulse(m_leftEncoder.getDistancePerPulse());    // get what we set; they always should be the same
@@ -167,6 +253,24 @@ public class DriveSubsystem extends SubsystemBase {
 
           SmartDashboard.putData("Field", m_field);     // display the field overhead view
           m_field.setRobotPose(m_pose);                     // show the starting pose on the field
+
+          // Field2d creates objects on every update so it only gets updated at kFieldPeriod
+
+          if (DrivetrainConstants.kUseAllocationFreeOdometry) {
+            MultiRateScheduler.register("DriveSubsystem.updateField()", this::updateField,
+                                        SchedulerConstants.kFieldPeriod, SchedulerConstants.kFieldOffset, Criticality.kLow);
+          }
+        }
+
+        // the odometry sampler and vision fusion counters only need to be seen once in a while
+
+        MultiRateScheduler.register("DriveSubsystem.publishStats()", this::publishStats,
+                                    SchedulerConstants.kStatsPeriod, SchedulerConstants.kDriveStatsOffset, Criticality.kLow);
+
+        if (DrivetrainConstants.kUseAllocationFreeOdometry && DrivetrainConstants.kUseHighRateOdometry) {
+
+          m_odometryNotifier.setName("OdometrySampler");
+          m_odometryNotifier.startPeriodic(DrivetrainConstants.kOdometrySamplePeriod.in(Seconds));
         }
     }
 
@@ -228,17 +332,229 @@ public class DriveSubsystem extends SubsystemBase {
 
 
 
+  // AnalogGyro reads clockwise positive in degrees - odometry wants counter-clockwise positive radians
+  //
+  // this is what getRotation2d() does but without creating a Rotation2d
+
+  private double getGyroRadians() {
+
+    return -Math.toRadians(m_gyro.getAngle());
+  }
+
+
+
+  // runs on the odometry Notifier thread - only reads sensors and hands them to the sample buffer
+  //
+  // if the main loop has fallen so far behind that the buffer is full, the sample just gets dropped
+
+  private void sampleOdometry() {
+
+    m_odometrySamples.offer(RobotController.getFPGATime() / 1.0e6,
+                            m_leftEncoder.getDistance(),
+                            m_rightEncoder.getDistance(),
+                            getGyroRadians());
+  }
+
+
+
+  private void updateOdometry(double timestamp, double gyroRadians, double leftDistance, double rightDistance) {
+
+    m_fastOdometry.update(gyroRadians, leftDistance, rightDistance);
+
+    if (DrivetrainConstants.kUsePoseEstimator) {
+
+      m_poseHistory.add(timestamp, leftDistance, rightDistance, gyroRadians,
+                        m_fastOdometry.getX(), m_fastOdometry.getY(), m_fastOdometry.getHeadingRadians());
+    }
+  }
+
+
+
+  // apply a vision pose measurement taken at timestampSeconds (FPGA time - when the camera took the picture, not when
+  // we got it)
+  //
+  // we find where odometry thought we were at that moment, move that part of the way toward what vision saw and then
+  // re-run all of the odometry we've done since then on top of the corrected pose - so the correction ends up applied
+  // at the right point in the past instead of being smeared onto wherever we've driven to since
+  //
+  // measurements older than the pose history get thrown away
+  //
+  // nothing in here creates new objects so it's fine to call every cycle
+
+  public void addVisionMeasurement(double x, double y, double headingRadians, double timestampSeconds) {
+
+    if ( ! DrivetrainConstants.kUseAllocationFreeOdometry || ! DrivetrainConstants.kUsePoseEstimator) {
+      return;
+    }
+
+    int index = m_poseHistory.indexAtOrBefore(timestampSeconds);
+
+    if (index < 0) {
+      m_visionMeasurementsRejected++;
+      return;
+    }
+
+    double historyX       = m_poseHistory.getX(index);
+    double historyY       = m_poseHistory.getY(index);
+    double historyHeading = m_poseHistory.getHeadingRadians(index);
+
+    double correctedX       = historyX + (x - historyX) * DrivetrainConstants.kVisionTranslationTrust;
+    double correctedY       = historyY + (y - historyY) * DrivetrainConstants.kVisionTranslationTrust;
+    double correctedHeading = MathUtil.angleModulus(historyHeading
+                                                    + MathUtil.angleModulus(headingRadians - historyHeading) * DrivetrainConstants.kVisionHeadingTrust);
+
+    // replay from the corrected pose using the sensor readings we kept
+
+    m_replayOdometry.resetPosition(m_poseHistory.getGyroRadians(index),
+                                   m_poseHistory.getLeftDistance(index),
+                                   m_poseHistory.getRightDistance(index),
+                                   correctedX, correctedY, correctedHeading);
+
+    m_poseHistory.setPose(index, correctedX, correctedY, correctedHeading);
+
+    int newest = m_poseHistory.size() - 1;
+
+    for (int i = index + 1 ; i <= newest ; i++) {
+
+      m_replayOdometry.update(m_poseHistory.getGyroRadians(i),
+                              m_poseHistory.getLeftDistance(i),
+                              m_poseHistory.getRightDistance(i));
+
+      m_poseHistory.setPose(i, m_replayOdometry.getX(), m_replayOdometry.getY(), m_replayOdometry.getHeadingRadians());
+    }
+
+    // and pick up from the end of the replay with the live odometry
+
+    m_fastOdometry.resetPosition(m_poseHistory.getGyroRadians(newest),
+                                 m_poseHistory.getLeftDistance(newest),
+                                 m_poseHistory.getRightDistance(newest),
+                                 m_replayOdometry.getX(), m_replayOdometry.getY(), m_replayOdometry.getHeadingRadians());
+
+    m_visionMeasurementsApplied++;
+  }
+
+
+
+  // put the robot somewhere else on the field - heading is counter-clockwise positive radians
+  //
+  // anything the sampling thread collected before this was measured from the old pose so it gets thrown away
+
+  public void resetPose(double x, double y, double headingRadians) {
+
+    while (m_odometrySamples.poll()) {
+      // drop it
+    }
+
+    double leftDistance  = m_leftEncoder.getDistance();
+    double rightDistance = m_rightEncoder.getDistance();
+
+    m_fastOdometry.resetPosition(getGyroRadians(), leftDistance, rightDistance, x, y, headingRadians);
+
+    m_odometry.resetPosition(m_gyro.getRotation2d(), leftDistance, rightDistance,
+                             new Pose2d(x, y, new Rotation2d(headingRadians)));
+
+    m_poseHistory.clear();
+  }
+
+
+
+  public long getVisionMeasurementsApplied() {
+
+    return m_visionMeasurementsApplied;
+  }
+
+
+
+  public long getVisionMeasurementsRejected() {
+
+    return m_visionMeasurementsRejected;
+  }
+
+
+
+  // where we were at some time in the recent past - {x meters, y meters, heading degrees}
+  //
+  // returns false if the time is older than the pose history
+
+  public boolean getPoseAt(double timestampSeconds, double[] pose) {
+
+    return m_poseHistory.getPoseAt(timestampSeconds, pose);
+  }
+
+
+
+  public long getDroppedOdometrySamples() {
+
+    return m_odometrySamples.getDroppedCount();
+  }
+
+
+
+  // runs from the MultiRateScheduler at kStatsPeriod - a climbing dropped sample count means periodic() isn't keeping
+  // up with the sampling thread
+
+  private void publishStats() {
+
+    SmartDashboard.putNumber("Drive/Dropped Odometry Samples",     getDroppedOdometrySamples());
+    SmartDashboard.putNumber("Drive/Vision Measurements Applied",  m_visionMeasurementsApplied);
+    SmartDashboard.putNumber("Drive/Vision Measurements Rejected", m_visionMeasurementsRejected);
+  }
+
+
+
+  // creates a new Pose2d - fine for commands that need it once but don't call it every cycle
+
+  public Pose2d getPose() {
+
+    if (DrivetrainConstants.kUseAllocationFreeOdometry) {
+      return m_fastOdometry.getPoseMeters();
+    }
+
+    return m_odometry.getPoseMeters();
+  }
+
+
+
+  // the pose without creating anything - {x meters, y meters, heading degrees}
+
+  public void getPose(double[] pose) {
+
+    if (DrivetrainConstants.kUseAllocationFreeOdometry) {
+      m_fastOdometry.copyTo(pose);
+      return;
+    }
+
+    Pose2d odometryPose = m_odometry.getPoseMeters();
+
+    pose[0] = odometryPose.getX();
+    pose[1] = odometryPose.getY();
+    pose[2] = odometryPose.getRotation().getDegrees();
+  }
+
+
+
+  // read the hardware once at the top of the cycle - everything else reads the frame
+
+  public void sampleSensors(RobotStateFrame frame) {
+
+    frame.setDriveOutputs(m_leftFrontOutput.get(), m_rightFrontOutput.get());     // what we last sent - no need to ask the controllers
+  }
+
+
+
   // be able to get the current speeds for logging and dashboard use
+  //
+  // these are what the motors were at the start of this cycle
 
   public double getLeftSpeed() {
 
-    return m_leftFrontMotor.get();
+    return RobotStateFrame.getInstance().getLeftDriveOutput();
   }
 
 
   public double getRightSpeed() {
 
-    return m_rightFrontMotor.get();
+    return RobotStateFrame.getInstance().getRightDriveOutput();
   }
 
 
@@ -353,7 +669,38 @@ public class DriveSubsystem extends SubsystemBase {
   @Override
   public void periodic() {
 
-    if ( ! Robot.isReal()) {
+    long startTime = LoopTimer.start();
+
+    if (DrivetrainConstants.kUseAllocationFreeOdometry) {
+
+      // nothing in here creates new objects - the Field2d update runs from the MultiRateScheduler (see updateField())
+
+      if (DrivetrainConstants.kUseHighRateOdometry) {
+
+        // integrate everything the sampling thread has collected since last time
+
+        while (m_odometrySamples.poll()) {
+
+          updateOdometry(m_odometrySamples.getPolledTimestamp(),
+                         m_odometrySamples.getPolledGyroRadians(),
+                         m_odometrySamples.getPolledLeftDistance(),
+                         m_odometrySamples.getPolledRightDistance());
+        }
+
+      } else {
+
+        updateOdometry(RobotController.getFPGATime() / 1.0e6,
+                       getGyroRadians(),
+                       m_leftEncoder.getDistance(),
+                       m_rightEncoder.getDistance());
+      }
+
+      if (LoadGovernor.shouldRun(m_posePublishGovernorSlot)) {      // the odometry itself is never shed, just publishing it
+        m_fastOdometry.copyTo(m_poseArray);
+        m_posePublisher.set(m_poseArray);
+      }
+
+    } else if ( ! Robot.isReal()) {
 
       m_odometry.update(m_gyro.getRotation2d(),
                         m_leftEncoder.getDistance(),
@@ -362,6 +709,17 @@ public class DriveSubsystem extends SubsystemBase {
       // show the robot on the fidl in its latest pose
       m_field.setRobotPose(m_odometry.getPoseMeters());
     }
+
+    LoopTimer.stop(m_periodicTimingSlot, startTime);
+  }
+
+
+
+  // show the robot on the field in its latest pose - sim only, runs from the MultiRateScheduler at kFieldPeriod
+
+  private void updateField() {
+
+    m_field.setRobotPose(m_fastOdometry.getPoseMeters());
   }
 
 
@@ -369,10 +727,14 @@ public class DriveSubsystem extends SubsystemBase {
   @Override
   public void simulationPeriodic() {
 
+    long startTime = LoopTimer.start();
+
     // the inclusion of robot voltage maps the -1 to 1 "speed" value into voltage which setInputs uses
     // direction gets handled as part of the sign of the speed
-    m_diffDriveSim.setInputs(getLeftSpeed() * RobotController.getInputVoltage(),
-                             getRightSpeed() * RobotController.getInputVoltage()); // invert right side
+    double batteryVoltage = RobotStateFrame.getInstance().getBatteryVoltage();
+
+    m_diffDriveSim.setInputs(getLeftSpeed() * batteryVoltage,
+                             getRightSpeed() * batteryVoltage); // invert right side
     
     // Advance the model by 20 ms. Note that if you are running this
     // subsystem in a separate thread or have changed the nominal timestep
@@ -387,5 +749,7 @@ public class DriveSubsystem extends SubsystemBase {
     m_rightEncoderSim.setRate(m_diffDriveSim.getRightVelocityMetersPerSecond());
 
     m_gyroSim.setAngle(-m_diffDriveSim.getHeading().getDegrees());
+
+    LoopTimer.stop(m_simPeriodicTimingSlot, startTime);
   }
 }
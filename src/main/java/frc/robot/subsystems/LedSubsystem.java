@@ -10,6 +10,10 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
 // our robot constants
 
 import frc.robot.Constants.LedConstants;
+import frc.robot.Constants.SchedulerConstants;
+import frc.robot.Criticality;
+import frc.robot.MultiRateScheduler;
+import frc.robot.StartupOrchestrator;
 
 
 
@@ -36,11 +40,22 @@ public class LedSubsystem extends SubsystemBase {
         m_led = new AddressableLED(LedConstants.kLedPwmPort);
 
         m_ledBuffer = new AddressableLEDBuffer(LedConstants.kNumOfLeds);
-        m_led.setLength(LedConstants.kNumOfLeds);
 
-        // setLedsMaroon();
+        // doesn't depend on anything else so it gets set up alongside the motor controllers
+
+        StartupOrchestrator.submit("LEDs", () -> {
+
+            m_led.setLength(LedConstants.kNumOfLeds);
+
+            // setLedsMaroon();
    
-        m_led.start();
+            m_led.start();
+        });
+
+        // the buffer goes out at kLedPeriod instead of every cycle - see flush()
+
+        MultiRateScheduler.register("LedSubsystem.flush()", this::flush, SchedulerConstants.kLedPeriod, SchedulerConstants.kLedOffset,
+                                    Criticality.kLow);
     }
     
 
@@ -53,7 +68,7 @@ public class LedSubsystem extends SubsystemBase {
 
     // all the various color and effect routines do not ned to do a .setData() call
     //
-    // the periodic routine for the LedSubsystem will do it for you
+    // the flush routine for the LedSubsystem will do it for you
 
     public void setLedsOff() {
 
@@ -281,11 +296,15 @@ public class LedSubsystem extends SubsystemBase {
 /* Periodics ************************************************************************************
  ************************************************************************************************/
 
-  @Override
-  public void periodic() {
+  // pushes the whole buffer out to the LEDs - runs from the MultiRateScheduler at kLedPeriod, whatever the effects
+  // did to the buffer in between just goes out with the next one
+  //
+  // only public so LedBenchmark can time it - nothing else should call it
+
+  public void flush() {
 
     m_led.setData(m_ledBuffer);
- }
+  }
 
 
 
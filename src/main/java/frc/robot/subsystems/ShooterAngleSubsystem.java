@@ -21,10 +21,12 @@ import edu.wpi.first.util.sendable.SendableBuilder;
 // our robot constants
 
 import frc.robot.Robot;
+import frc.robot.BackgroundWorker;
+import frc.robot.LoopTimer;
 import frc.robot.Constants.ShooterConstants;
 import frc.robot.Constants.ShooterAngleConstants;
 
-import frc.robot.Utilities;
+import frc.robot.InterpolatingTable;
 
 import java.util.function.DoubleSupplier;
 
@@ -55,12 +57,16 @@ public class ShooterAngleSubsystem extends SubsystemBase {
     // all of this would need to be worked out emperically through actual robot testing to work out exactly how our
     // shooter works in terms of speds and angles for different distances
 
-    private double[][] m_shooterAngleTable = { {5.0, 45.0}, {7.5, 40},  {8.5, 35.0}, {9.5, 31.0}, {10.5, 28.0}, {ShooterConstants.kMaxShootRange.in(Meters), 25.0} };
+    private final InterpolatingTable m_shooterAngleTable = new InterpolatingTable(new double[][] {
+        {5.0, 45.0}, {7.5, 40},  {8.5, 35.0}, {9.5, 31.0}, {10.5, 28.0}, {ShooterConstants.kMaxShootRange.in(Meters), 25.0}
+    });
 
     private double m_shooterAngleDegreesTarget = 0.0;;
 
     private double m_targetRange               = 0.0;
 
+    private final int m_periodicTimingSlot     = LoopTimer.register("ShooterAngleSubsystem.periodic()");
+
 
 
     public ShooterAngleSubsystem() {
@@ -87,20 +93,31 @@ public class ShooterAngleSubsystem extends SubsystemBase {
 
         m_targetRange = range;
         
-        System.out.println("setShooterAngleByrange(" + range + ") = " + Utilities.lookupByValue(m_targetRange, m_shooterAngleTable));
-  
-        setShooterAngleDegrees(Utilities.lookupByValue(m_targetRange, m_shooterAngleTable));
+        setShooterAngleDegrees(m_shooterAngleTable.get(m_targetRange));
+
+        BackgroundWorker.log("setShooterAngleByrange(" + range + ") = " + m_shooterAngleDegreesTarget);
     }
 
 
 
-    private void setShooterAngleDegrees(double angle) {
+    // set the angle directly - used when the angle has already been worked out (like from the shot solution table)
+
+    public void setShooterAngleDegrees(double angle) {
 
         m_shooterAngleDegreesTarget = angle;
     }
 
 
 
+    // the shot solution table is built from this at startup
+
+    public InterpolatingTable getShooterAngleTable() {
+
+        return m_shooterAngleTable;
+    }
+
+
+
     private double getShooterAngleDegrees() {
 
       // we return the angle + .1 degrees - no mechanism is perfect - this is essentially "simulating" 
@@ -124,11 +141,12 @@ public class ShooterAngleSubsystem extends SubsystemBase {
 
 
 
-    // this gets called from the periodic routine
-    //
     // all dashboard updates happen here
     //
     // keeps periodic() cleaner
+    //
+    // there's nothing in it yet so it isn't scheduled - once there is, register it with the MultiRateScheduler at
+    // kDashboardPeriod / kShooterAngleDashboardOffset as kLow
 
     private void updateDashboard() {
 
@@ -151,6 +169,16 @@ public class ShooterAngleSubsystem extends SubsystemBase {
 
 
 
+  public Command setShooterAngleCommand(DoubleSupplier angleSupplier) {
+
+    return runOnce(
+        () -> {
+          setShooterAngleDegrees(angleSupplier.getAsDouble());
+        });
+  }
+
+
+
   public Command stabilizeShooterAngleCommand() {
 
     return run(() -> atShooterAngle());     // run until it returns false
@@ -164,7 +192,11 @@ public class ShooterAngleSubsystem extends SubsystemBase {
   @Override
   public void periodic() {
 
-    updateDashboard();
+    long startTime = LoopTimer.start();
+
+    // nothing needs to happen every cycle yet
+
+    LoopTimer.stop(m_periodicTimingSlot, startTime);
   }
 
 
@@ -1,9 +1,15 @@
 package frc.robot.subsystems;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.system.plant.DCMotor;
 
 import static edu.wpi.first.units.Units.*;
 
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.util.sendable.SendableBuilder;
@@ -19,11 +25,24 @@ import com.revrobotics.CANSparkLowLevel.MotorType;
 // our robot constants
 
 import frc.robot.Robot;
+import frc.robot.BackgroundWorker;
+import frc.robot.Criticality;
+import frc.robot.LoopTimer;
+import frc.robot.MultiRateScheduler;
+import frc.robot.RobotStateFrame;
+import frc.robot.SparkMaxConfig;
+import frc.robot.SparkMaxOutput;
+import frc.robot.SparkMaxStatusFrames;
+import frc.robot.SparkMaxStatusProfile;
+import frc.robot.SpinUpStrategy;
+import frc.robot.StartupOrchestrator;
 import frc.robot.Constants.ShooterConstants;
-import frc.robot.Utilities;
+import frc.robot.InterpolatingTable;
 
 
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
 
 
@@ -42,13 +61,36 @@ public class ShooterSubsystem extends SubsystemBase {
 
     private SparkPIDController m_shooterPidController;
 
+    // all shooter and kicker setpoints go through these so repeated identical setpoints stay off the CAN bus
+
+    private final SparkMaxOutput m_shooterOutput = new SparkMaxOutput("Shooter", m_shooterMotor, ShooterConstants.kShooterRpmEpsilon);
+    private final SparkMaxOutput m_kickerOutput  = new SparkMaxOutput("Kicker",  m_kickerMotor,  ShooterConstants.kKickerOutputEpsilon);
+
     private RelativeEncoder m_shooterEncoder;
 
+
+    // roboRIO side velocity loop (only when kUseRioVelocityLoop) - see runRioVelocityLoop()
+    //
+    // it sends voltages through its own output so the velocity setpoint bookkeeping above never sees them
+
+    private final SparkMaxOutput m_shooterVoltageOutput   = new SparkMaxOutput("Shooter Voltage", m_shooterMotor, ShooterConstants.kShooterVoltageEpsilon);
+
+    private final SimpleMotorFeedforward m_rioFeedforward = new SimpleMotorFeedforward(ShooterConstants.kRioFlywheelKs,
+                                                                                       ShooterConstants.kRioFlywheelKv,
+                                                                                       ShooterConstants.kRioFlywheelKa);
+
+    private final PIDController m_rioPid                  = new PIDController(ShooterConstants.kRioFlywheelP,
+                                                                              ShooterConstants.kRioFlywheelI,
+                                                                              ShooterConstants.kRioFlywheelD,
+                                                                              ShooterConstants.kRioLoopPeriod.in(Seconds));
+
+    private final AtomicBoolean m_rioAtSpeed              = new AtomicBoolean(false);   // set by the fast loop, read by everyone else
+
     // we've got a table that maps distance to the target to an appropriate shooter speed
     //
     // we'd take that same distance and map it to a shooter angle in the ShooterAngleSubsystem
     //
-    // we use the value passed if we find it, otherwise we use the value just below up to the next value
+    // distances that fall between two entries get a speed interpolated between those two entries
     //
     // table is arranged so the distance, in meters, is the first entry and the speed or angle is the second entry
     //
@@ -57,35 +99,139 @@ public class ShooterSubsystem extends SubsystemBase {
     // all of this would need to be worked out emperically through actual robot testing to work out exactly how our
     // shooter works in terms of speeds and angles for different distances
 
-    private double[][] m_shooterSpeedTable = { {4.0, 750}, {5.5, 1000}, {7.0, 1400}, {9.5, 1800}, {11.0, 2200}, {ShooterConstants.kMaxShootRange.in(Meters), 2500} };
+    private final InterpolatingTable m_shooterSpeedTable = new InterpolatingTable(new double[][] {
+        {4.0, 750}, {5.5, 1000}, {7.0, 1400}, {9.5, 1800}, {11.0, 2200}, {ShooterConstants.kMaxShootRange.in(Meters), 2500}
+    });
 
     private double m_shooterRpmTarget          = 0.0;
 
 
+    // simulation
+    //
+    // a physics model of the flywheel (NEO, gearing, MOI) with the SparkMax velocity PID emulated on top of it using
+    // the same gains we configure the real controller with - so atShooterSpeed() takes about as long to come true in
+    // the sim as it does on the robot
+    //
+    // the simulated encoder is just the model's velocity - sampleSensors() uses it in place of the SparkMax encoder
+
+    private final DCMotor m_shooterGearbox  = DCMotor.getNEO(1);
+    private final FlywheelSim m_flywheelSim = new FlywheelSim(m_shooterGearbox, ShooterConstants.kShooterGearing, ShooterConstants.kShooterMoi);
+
+    private double m_simVelocityRpm         = 0.0;      // motor RPM - what the SparkMax encoder would report
+    private double m_simIAccum              = 0.0;      // PID integrator, same as the SparkMax keeps
+    private double m_simLastError           = 0.0;
+
+
+    // spin-up metrics - how long it takes to get within tolerance after a new target and how far past it we go
+    //
+    // these work the same on the real robot, the sim just lets us measure them without one
+
+    private double  m_spinUpStartTime       = Double.NaN;   // NaN - not tracking a spin-up
+    private boolean m_spinUpReached         = false;
+    private double  m_spinUpTimeMs          = 0.0;      // last completed spin-up
+    private double  m_overshootRpm          = 0.0;      // worst overshoot since the last new target
+
+
+    // flywheel estimator - see updateEstimator()
+
+    private double m_estimatorLastVelocity  = 0.0;
+    private double m_estimatorLastTime      = Double.NaN;
+    private double m_acceleration           = 0.0;      // RPM/s, filtered
+    private double m_timeConstant           = ShooterConstants.kFlywheelTimeConstant.in(Seconds);
+    private double m_predictedTimeToSpeed   = Double.POSITIVE_INFINITY;     // seconds
+    private double m_predictedSettleTime    = Double.POSITIVE_INFINITY;     // FPGA seconds
+
+    // what the estimator said when we kicked - so we can compare it to what actually happened
+
+    private double m_kickTime               = Double.NaN;
+    private double m_kickPredictedSettleTime = Double.NaN;
+
+
+    // spin-up strategy - see SpinUpStrategy
+    //
+    // m_bangBangActive is true while we're in the full output part of a bang-bang spin-up
+
+    private SpinUpStrategy m_spinUpStrategy   = ShooterConstants.kDefaultSpinUpStrategy;
+    private SpinUpStrategy m_spinUpStrategyUsed = ShooterConstants.kDefaultSpinUpStrategy;     // by the spin-up being tracked
+    private boolean m_bangBangActive          = false;
+
+    // per strategy totals so they can be compared - indexed by SpinUpStrategy.ordinal()
+
+    private final long[]   m_strategySpinUps        = new long[SpinUpStrategy.values().length];
+    private final double[] m_strategySpinUpMsTotal  = new double[SpinUpStrategy.values().length];
+    private final double[] m_strategyOvershootTotal = new double[SpinUpStrategy.values().length];
+
+
+    // ready mode state
+
+    private boolean m_readyActive           = false;
+    private boolean m_readyBatteryLow       = false;
+    private double  m_readyRange            = Double.NaN;   // last good range from vision
+    private double  m_readyLastSeenTime     = Double.NEGATIVE_INFINITY;
+
+    private final int m_periodicTimingSlot     = LoopTimer.register("ShooterSubsystem.periodic()");
+
+
 
     public ShooterSubsystem() {
 
-        m_shooterMotor.restoreFactoryDefaults();
-        m_kickerMotor.restoreFactoryDefaults();
+        // the controllers are only reset and rewritten if what they have saved doesn't match what we declare here
+        // (see SparkMaxConfig)
+        //
+        // the configuration runs on the StartupOrchestrator alongside everything else's - robotInit() waits for it
+        //
+        // the shooter needs its velocity as fast as we can get it - the kicker only needs to be heard from during a shot
 
-        m_shooterMotor.stopMotor();                     // just a safety thing - they should be stopped on instantiation
-        m_kickerMotor.stopMotor();
-   
-        m_shooterMotor.setSmartCurrentLimit(ShooterConstants.kShooterMotorCurrentLimit);        
-        m_kickerMotor.setSmartCurrentLimit(ShooterConstants.kKickerMotorCurrentLimit);
+        StartupOrchestrator.submit("Shooter", () -> {
 
-        m_shooterPidController = m_shooterMotor.getPIDController();
+            new SparkMaxConfig().smartCurrentLimit(ShooterConstants.kShooterMotorCurrentLimit)
+                                .pid(ShooterConstants.kShooterPidP,
+                                     ShooterConstants.kShooterPidI,
+                                     ShooterConstants.kShooterPidD,
+                                     ShooterConstants.kShooterPidFF,
+                                     ShooterConstants.kShooterPidIzone)
+                                .outputRange(ShooterConstants.kShooterPidOutputMin, ShooterConstants.kShooterPidOutputMax)
+                                .apply("Shooter", m_shooterMotor);
+
+            SparkMaxStatusFrames.register("Shooter", m_shooterMotor, ShooterConstants.kUseRioVelocityLoop ? SparkMaxStatusProfile.kRioVelocityLoop
+                                                                                                          : SparkMaxStatusProfile.kVelocityCritical);
+
+            // the roboRIO loop needs a fresher velocity than the default averaging gives - SparkMaxConfig doesn't know
+            // about these so they get sent every boot
+
+            if (ShooterConstants.kUseRioVelocityLoop) {
+                m_shooterMotor.getEncoder().setMeasurementPeriod(ShooterConstants.kRioEncoderMeasurementPeriodMs);
+                m_shooterMotor.getEncoder().setAverageDepth(ShooterConstants.kRioEncoderAverageDepth);
+            }
+
+            m_shooterOutput.stopMotor();                // just a safety thing - they should be stopped on instantiation
+
+            if ( ! ShooterConstants.kUseRioVelocityLoop) {
+                m_shooterOutput.setReference(m_shooterRpmTarget, CANSparkMax.ControlType.kVelocity);
+            }
+        });
+
+        StartupOrchestrator.submit("Kicker", () -> {
+
+            new SparkMaxConfig().smartCurrentLimit(ShooterConstants.kKickerMotorCurrentLimit)
+                                .apply("Kicker", m_kickerMotor);
+
+            SparkMaxStatusFrames.register("Kicker", m_kickerMotor, SparkMaxStatusProfile.kIdle);
+
+            m_kickerOutput.stopMotor();
+        });
 
-        m_shooterPidController.setP(ShooterConstants.kShooterPidP);
-        m_shooterPidController.setI(ShooterConstants.kShooterPidI);
-        m_shooterPidController.setD(ShooterConstants.kShooterPidD);
-        m_shooterPidController.setFF(ShooterConstants.kShooterPidFF);
-        m_shooterPidController.setIZone(ShooterConstants.kShooterPidIzone);
-        m_shooterPidController.setOutputRange(ShooterConstants.kShooterPidOutputMin, ShooterConstants.kShooterPidOutputMax);
-        m_shooterPidController.setReference(m_shooterRpmTarget, CANSparkMax.ControlType.kVelocity);
+        m_shooterPidController = m_shooterMotor.getPIDController();
 
         m_shooterEncoder = m_shooterMotor.getEncoder();
 
+        // the roboRIO velocity loop runs faster than the main loop
+
+        if (ShooterConstants.kUseRioVelocityLoop) {
+          MultiRateScheduler.register("ShooterSubsystem.runRioVelocityLoop()", this::runRioVelocityLoop,
+                                      ShooterConstants.kRioLoopPeriod, ShooterConstants.kRioLoopOffset, Criticality.kCritical);
+        }
+
         if ( ! Robot.isReal()) {                        // setup things for the simulation as needed
         
         }
@@ -96,11 +242,117 @@ public class ShooterSubsystem extends SubsystemBase {
     // set the shooter speed based on the target distance
     public void setShooterSpeedByRange(double range) {
 
-      System.out.println("setShooterSpeedbyRange(" + range + ") = " + Utilities.lookupByValue(range, m_shooterSpeedTable));
+      double rpm = m_shooterSpeedTable.get(range);
+
+      BackgroundWorker.log("setShooterSpeedbyRange(" + range + ") = " + rpm);
+
+      setShooterRpm(rpm);
+    }
+
+
+
+    // set the shooter speed directly - used when the RPM has already been worked out (like from the shot solution table)
+
+    public void setShooterRpm(double rpm) {
+
+      // whatever the estimator predicted was for the old target - at rest that's 0 against a target of 0, which would
+      // say a cold flywheel is ready to feed. don't trust it until periodic() has run the estimator against this one
+      //
+      // the same goes for the roboRIO loop's at speed flag - it was checked against the old target, and the shot
+      // checks atShooterSpeed() in the same pass it raises the target from ready mode's
+
+      if (Math.abs(rpm - m_shooterRpmTarget) > ShooterConstants.kShooterSpeedTolerance) {
+        m_predictedTimeToSpeed = Double.POSITIVE_INFINITY;
+        m_predictedSettleTime  = Double.POSITIVE_INFINITY;
+        m_rioAtSpeed.set(false);
+      }
+
+      // a new target - start timing the spin-up (ready mode nudging the target around as the range changes doesn't
+      // count, see kNewSpinUpRpm)
+
+      if (rpm > 0.0 && Math.abs(rpm - m_shooterRpmTarget) > ShooterConstants.kNewSpinUpRpm) {
+
+        finishSpinUp();
+
+        m_spinUpStartTime    = RobotStateFrame.getInstance().getTimestamp();
+        m_spinUpReached      = false;
+        m_overshootRpm       = 0.0;
+        m_spinUpStrategyUsed = m_spinUpStrategy;
+
+        // an early kick belongs to the spin-up it happened in - don't let it get scored against this one
+
+        m_kickTime                = Double.NaN;
+        m_kickPredictedSettleTime = Double.NaN;
+
+        m_bangBangActive = m_spinUpStrategy == SpinUpStrategy.kBangBangHandoff
+                           && rpm - getShooterVelocity() > ShooterConstants.kBangBangHandoffBand;
+      }
+
+      m_shooterRpmTarget = rpm;
+
+      sendShooterTarget();
+    }
+
+
+
+    // with the SparkMax running the velocity loop the target goes straight to it - with the roboRIO loop, that loop
+    // picks the target up on its next run
+
+    //
+    // during the full output part of a bang-bang spin-up the SparkMax just gets full duty cycle
+
+    private void sendShooterTarget() {
 
-      m_shooterRpmTarget = Utilities.lookupByValue(range, m_shooterSpeedTable);
+      if (ShooterConstants.kUseRioVelocityLoop) {
+        return;
+      }
 
-      m_shooterPidController.setReference(m_shooterRpmTarget, CANSparkMax.ControlType.kVelocity);
+      if (m_bangBangActive) {
+        m_shooterOutput.set(ShooterConstants.kShooterPidOutputMax);
+      } else {
+        m_shooterOutput.setReference(m_shooterRpmTarget, CANSparkMax.ControlType.kVelocity);
+      }
+    }
+
+
+
+    // called from periodic() - once a bang-bang spin-up gets inside the handoff band, give it to the velocity loop
+    //
+    // the roboRIO loop does its own handoff check every time it runs
+
+    private void updateBangBang() {
+
+      if ( ! m_bangBangActive || ShooterConstants.kUseRioVelocityLoop) {
+        return;
+      }
+
+      if (m_shooterRpmTarget - getShooterVelocity() <= ShooterConstants.kBangBangHandoffBand) {
+        m_bangBangActive = false;
+        sendShooterTarget();
+      }
+    }
+
+
+
+    public void setSpinUpStrategy(SpinUpStrategy strategy) {
+
+      m_spinUpStrategy = strategy;                // takes effect on the next new target
+    }
+
+
+
+    public SpinUpStrategy getSpinUpStrategy() {
+
+      return m_spinUpStrategy;
+    }
+
+
+
+    // the shot solution table is built from this at startup
+
+    public InterpolatingTable getShooterSpeedTable() {
+
+      return m_shooterSpeedTable;
     }
 
     
@@ -109,22 +361,46 @@ public class ShooterSubsystem extends SubsystemBase {
 
     public void shooterMotorOff() {
 
+      finishSpinUp();
+
       m_shooterRpmTarget = 0.0;
+      m_spinUpStartTime  = Double.NaN;
+      m_bangBangActive   = false;
+
+      m_kickTime                = Double.NaN;       // a shot that never reached speed has nothing to compare against
+      m_kickPredictedSettleTime = Double.NaN;
+
+      m_predictedTimeToSpeed = Double.POSITIVE_INFINITY;
+      m_predictedSettleTime  = Double.POSITIVE_INFINITY;
+      m_rioAtSpeed.set(false);
+
+      sendShooterTarget();
+    }
 
-      m_shooterPidController.setReference(m_shooterRpmTarget, CANSparkMax.ControlType.kVelocity);
+
+
+    // read the hardware once at the top of the cycle - everything else reads the frame
+
+    public void sampleSensors(RobotStateFrame frame) {
+
+      frame.setShooterVelocity(Robot.isReal() ? m_shooterEncoder.getVelocity() : m_simVelocityRpm);
     }
 
 
 
     public double getShooterVelocity() {
 
-      return m_shooterEncoder.getVelocity();      // return the RPM - not power percentage
+      return RobotStateFrame.getInstance().getShooterVelocity();      // return the RPM - not power percentage
     }
 
 
 
     public boolean atShooterSpeed() {
 
+      if (ShooterConstants.kUseRioVelocityLoop) {
+        return m_rioAtSpeed.get();              // checked every fast loop against a fresh velocity
+      }
+
       if (MathUtil.isNear(m_shooterRpmTarget, getShooterVelocity(), ShooterConstants.kShooterSpeedTolerance)) {
         return true;
       }
@@ -139,23 +415,35 @@ public class ShooterSubsystem extends SubsystemBase {
 
     public void kickerMotorOn() {
 
-      m_kickerMotor.set(ShooterConstants.kKickerSpeed);
+      // remember the prediction if we're kicking before the flywheel is actually there
+
+      if ( ! atShooterSpeed() && ! Double.isNaN(m_spinUpStartTime) && ! m_spinUpReached) {
+        m_kickTime                = RobotStateFrame.getInstance().getTimestamp();
+        m_kickPredictedSettleTime = m_predictedSettleTime;
+      }
+
+      SparkMaxStatusFrames.requestProfile(m_kickerMotor, SparkMaxStatusProfile.kActive);
+
+      m_kickerOutput.set(ShooterConstants.kKickerSpeed);
     }
 
 
 
     public void kickerMotorOff() {
 
-      m_kickerMotor.stopMotor();
+      m_kickerOutput.stopMotor();
+
+      SparkMaxStatusFrames.requestProfile(m_kickerMotor, SparkMaxStatusProfile.kIdle);
     }
 
 
 
-    // this gets called from the periodic routine
-    //
     // all dashboard updates happen here
     //
     // keeps periodic() cleaner
+    //
+    // there's nothing in it yet so it isn't scheduled - once there is, register it with the MultiRateScheduler at
+    // kDashboardPeriod / kShooterDashboardOffset as kLow
 
     private void updateDashboard() {
 
@@ -163,6 +451,274 @@ public class ShooterSubsystem extends SubsystemBase {
 
 
 
+    // called from periodic() - watches the velocity after a new target to time the spin-up and catch any overshoot
+
+    private void trackSpinUp() {
+
+      if (Double.isNaN(m_spinUpStartTime)) {
+        return;
+      }
+
+      double velocity = getShooterVelocity();
+
+      if ( ! m_spinUpReached && atShooterSpeed()) {
+        m_spinUpReached = true;
+        m_spinUpTimeMs  = (RobotStateFrame.getInstance().getTimestamp() - m_spinUpStartTime) * 1000.0;
+
+        SmartDashboard.putNumber("Shooter/Spin-up ms", m_spinUpTimeMs);
+
+        // if we kicked early, how good was the prediction and how much earlier than waiting did we kick
+
+        if ( ! Double.isNaN(m_kickTime)) {
+
+          double now = RobotStateFrame.getInstance().getTimestamp();
+
+          SmartDashboard.putNumber("Shooter/Predicted Settle ms", (m_kickPredictedSettleTime - m_spinUpStartTime) * 1000.0);
+          SmartDashboard.putNumber("Shooter/Actual Settle ms",    m_spinUpTimeMs);
+          SmartDashboard.putNumber("Shooter/Settle Prediction Error ms", (now - m_kickPredictedSettleTime) * 1000.0);
+          SmartDashboard.putNumber("Shooter/Early Kick ms",       (now - m_kickTime) * 1000.0);
+
+          m_kickTime = Double.NaN;
+        }
+      }
+
+      if (velocity - m_shooterRpmTarget > m_overshootRpm) {     // only publish when it gets worse
+        m_overshootRpm = velocity - m_shooterRpmTarget;
+
+        SmartDashboard.putNumber("Shooter/Overshoot RPM", m_overshootRpm);
+      }
+    }
+
+
+
+    // roboRIO side flywheel velocity loop - runs every kRioLoopPeriod from the MultiRateScheduler
+    //
+    // feedforward from the target plus PID on the error, in volts - the SparkMax's voltage mode scales that by the
+    // bus voltage itself so the same volts give the same speed whatever the battery is doing. the output is capped
+    // at what the battery can actually give
+    //
+    // it reads the velocity straight from the SparkMax instead of the frame - the whole point is to react faster than
+    // the 20ms loop. readiness goes out through an atomic flag so atShooterSpeed() always has the latest answer
+    //
+    // the scheduler runs it on the main robot thread between main loop runs so nothing here races periodic()
+
+    private void runRioVelocityLoop() {
+
+      if ( ! Robot.isReal()) {
+        stepFlywheelSim(ShooterConstants.kRioLoopPeriod.in(Seconds));       // the physics runs at the loop rate too
+      }
+
+      double velocity = Robot.isReal() ? m_shooterEncoder.getVelocity() : m_simVelocityRpm;
+      double target   = m_shooterRpmTarget;
+
+      if (target <= 0.0) {
+
+        m_rioPid.reset();
+        m_shooterVoltageOutput.setReference(0.0, CANSparkMax.ControlType.kVoltage);     // coast down, don't brake
+        m_rioAtSpeed.set(false);
+
+      } else {
+
+        double maxVolts = Math.min(ShooterConstants.kRioMaxVoltage, RobotStateFrame.getInstance().getBatteryVoltage());
+
+        if (m_bangBangActive && target - velocity <= ShooterConstants.kBangBangHandoffBand) {
+          m_bangBangActive = false;
+          m_rioPid.reset();
+        }
+
+        double volts    = m_bangBangActive ? maxVolts
+                                           : m_rioFeedforward.calculate(target) + m_rioPid.calculate(velocity, target);
+
+        m_shooterVoltageOutput.setReference(MathUtil.clamp(volts, 0.0, maxVolts), CANSparkMax.ControlType.kVoltage);
+        m_rioAtSpeed.set(MathUtil.isNear(target, velocity, ShooterConstants.kShooterSpeedTolerance));
+      }
+    }
+
+
+
+    // flywheel estimator - called from periodic() once the frame has this cycle's velocity
+    //
+    // the acceleration comes from the change in velocity since last cycle (low pass filtered, it's noisy)
+    //
+    // the model is first order - the flywheel closes on its target at a rate proportional to how far away it is, so
+    // acceleration = error / time constant. when it's clearly accelerating toward the target we learn the time
+    // constant from error / acceleration, otherwise we keep the one we've got
+    //
+    // with the time constant, the time until the error shrinks to the tolerance is time constant * ln(error / tolerance)
+
+    private void updateEstimator() {
+
+      double now      = RobotStateFrame.getInstance().getTimestamp();
+      double velocity = getShooterVelocity();
+
+      if ( ! Double.isNaN(m_estimatorLastTime) && now > m_estimatorLastTime) {
+
+        double rawAcceleration = (velocity - m_estimatorLastVelocity) / (now - m_estimatorLastTime);
+
+        m_acceleration += ShooterConstants.kFlywheelAccelFilter * (rawAcceleration - m_acceleration);
+      }
+
+      m_estimatorLastVelocity = velocity;
+      m_estimatorLastTime     = now;
+
+      double error     = m_shooterRpmTarget - velocity;
+      double tolerance = ShooterConstants.kShooterSpeedTolerance;
+
+      boolean closing = Math.abs(m_acceleration) >= ShooterConstants.kFlywheelMinAccel
+                        && Math.signum(m_acceleration) == Math.signum(error);
+
+      if (m_shooterRpmTarget > 0.0 && closing && Math.abs(error) > tolerance) {
+
+        double measured = MathUtil.clamp(error / m_acceleration, 0.02, 2.0);
+
+        m_timeConstant += ShooterConstants.kFlywheelTimeConstantFilter * (measured - m_timeConstant);
+      }
+
+      if (Math.abs(error) <= tolerance) {
+        m_predictedTimeToSpeed = 0.0;
+      } else if (m_shooterRpmTarget <= 0.0 || (Math.abs(m_acceleration) >= ShooterConstants.kFlywheelMinAccel && ! closing)) {
+        m_predictedTimeToSpeed = Double.POSITIVE_INFINITY;         // stopped, or heading the wrong way
+      } else {
+        m_predictedTimeToSpeed = m_timeConstant * Math.log(Math.abs(error) / tolerance);
+      }
+
+      m_predictedSettleTime = now + m_predictedTimeToSpeed;
+    }
+
+
+
+    /**
+     * true once the note can be started toward the flywheel - it's at speed or will be by the time the note gets there
+     */
+    public boolean isReadyToFeed() {
+
+      if (atShooterSpeed()) {
+        return true;
+      }
+
+      return ShooterConstants.kUseEarlyKick && m_predictedTimeToSpeed <= ShooterConstants.kNoteFeedTime.in(Seconds);
+    }
+
+
+
+    public double getPredictedTimeToSpeed() {
+
+      return m_predictedTimeToSpeed;
+    }
+
+
+
+    // ready mode - called every cycle from the default command
+    //
+    // turns on when we've got a note and vision has us inside the shooting range and turns off when we don't have a
+    // note, vision hasn't seen the target for kReadyTargetHoldTime or we're more than kReadyRangeHysteresis outside
+    // the shooting range
+    //
+    // while it's on, the flywheel tracks the table RPM for the range - capped to part of that if the battery is low
+
+    private void updateReadyMode(double range, boolean hasTarget, boolean noteHeld) {
+
+      RobotStateFrame frame = RobotStateFrame.getInstance();
+
+      double now = frame.getTimestamp();
+
+      if (hasTarget && ! Double.isNaN(range)) {
+        m_readyRange        = range;
+        m_readyLastSeenTime = now;
+      }
+
+      double minRange   = ShooterConstants.kMinShootRange.in(Meters);
+      double maxRange   = ShooterConstants.kMaxShootRange.in(Meters);
+      double hysteresis = ShooterConstants.kReadyRangeHysteresis.in(Meters);
+
+      boolean targetRecent = now - m_readyLastSeenTime <= ShooterConstants.kReadyTargetHoldTime.in(Seconds);
+      boolean wasActive    = m_readyActive;
+
+      if ( ! m_readyActive) {
+        m_readyActive = noteHeld && hasTarget && m_readyRange >= minRange && m_readyRange <= maxRange;
+      } else if ( ! noteHeld || ! targetRecent
+                 || m_readyRange < minRange - hysteresis || m_readyRange > maxRange + hysteresis) {
+        m_readyActive = false;
+      }
+
+      double battery = frame.getBatteryVoltage();
+
+      if (battery < ShooterConstants.kReadyLowBattery.in(Volts)) {
+        m_readyBatteryLow = true;
+      } else if (battery > ShooterConstants.kReadyLowBattery.in(Volts) + ShooterConstants.kReadyBatteryHysteresis.in(Volts)) {
+        m_readyBatteryLow = false;
+      }
+
+      if (m_readyActive) {
+
+        double rpm = m_shooterSpeedTable.get(m_readyRange);
+
+        if (m_readyBatteryLow) {
+          rpm *= ShooterConstants.kReadyLowBatteryRpmFraction;
+        }
+
+        setShooterRpm(rpm);
+
+      } else if (wasActive) {
+        shooterMotorOff();
+      }
+
+      if (m_readyActive != wasActive) {
+        SmartDashboard.putBoolean("Shooter/Ready Mode", m_readyActive);
+      }
+    }
+
+
+
+    public boolean isReadyModeActive() {
+
+      return m_readyActive;
+    }
+
+
+
+    // the spin-up being tracked is over (new target or shooter off) - add it to its strategy's totals
+    //
+    // the overshoot isn't known until now since it can keep growing after we first get to speed
+
+    private void finishSpinUp() {
+
+      if (Double.isNaN(m_spinUpStartTime) || ! m_spinUpReached) {
+        return;
+      }
+
+      int    index    = m_spinUpStrategyUsed.ordinal();
+      String prefix   = "Shooter/" + m_spinUpStrategyUsed.name() + "/";
+
+      m_strategySpinUps[index]++;
+      m_strategySpinUpMsTotal[index]  += m_spinUpTimeMs;
+      m_strategyOvershootTotal[index] += m_overshootRpm;
+
+      SmartDashboard.putNumber(prefix + "Spin-ups",           m_strategySpinUps[index]);
+      SmartDashboard.putNumber(prefix + "Last Spin-up ms",    m_spinUpTimeMs);
+      SmartDashboard.putNumber(prefix + "Last Overshoot RPM", m_overshootRpm);
+      SmartDashboard.putNumber(prefix + "Avg Spin-up ms",     m_strategySpinUpMsTotal[index] / m_strategySpinUps[index]);
+      SmartDashboard.putNumber(prefix + "Avg Overshoot RPM",  m_strategyOvershootTotal[index] / m_strategySpinUps[index]);
+
+      m_spinUpStartTime = Double.NaN;             // only count it once
+    }
+
+
+
+    public double getSpinUpTimeMs() {
+
+      return m_spinUpTimeMs;
+    }
+
+
+
+    public double getOvershootRpm() {
+
+      return m_overshootRpm;
+    }
+
+
+
   /* Commands *************************************************************************
    ************************************************************************************/
 
@@ -177,6 +733,32 @@ public class ShooterSubsystem extends SubsystemBase {
 
 
 
+  public Command setShooterRpmCommand(DoubleSupplier rpm) {
+
+    return runOnce(
+        () -> {
+          setShooterRpm(rpm.getAsDouble());
+        });
+  }
+
+
+
+  // the default command - keeps the flywheel ready for the range we're at (see updateReadyMode())
+  //
+  // a shot interrupts this and takes over with the flywheel still spinning - ready mode picks back up from scratch
+  // after the shot is over
+
+  public Command readyModeCommand(DoubleSupplier range, BooleanSupplier hasTarget, BooleanSupplier noteHeld) {
+
+    return run(
+        () -> {
+          updateReadyMode(range.getAsDouble(), hasTarget.getAsBoolean(), noteHeld.getAsBoolean());
+        })
+        .finallyDo(() -> m_readyActive = false);
+  }
+
+
+
   public Command kickerMotorOnCommand() {
 
     return runOnce(
@@ -220,14 +802,118 @@ public class ShooterSubsystem extends SubsystemBase {
   @Override
   public void periodic() {
 
-    updateDashboard();
+    long startTime = LoopTimer.start();
+
+    updateEstimator();
+
+    updateBangBang();
+
+    trackSpinUp();
+
+    LoopTimer.stop(m_periodicTimingSlot, startTime);
   }
 
 
 
+  // step the flywheel in the SparkMax's 1ms PID steps for the whole robot loop period using whatever we last sent
+  // the controller
+
   @Override
   public void simulationPeriodic() {
 
+    if ( ! ShooterConstants.kUseRioVelocityLoop) {             // otherwise the roboRIO loop steps it at its own rate
+      stepFlywheelSim(TimedRobot.kDefaultPeriod);
+    }
+  }
+
+
+
+  private void stepFlywheelSim(double seconds) {
+
+    double batteryVoltage = RobotStateFrame.getInstance().getBatteryVoltage();
+    double stepSeconds    = ShooterConstants.kSparkMaxPidPeriod.in(Seconds);
+    int    steps          = (int)Math.round(seconds / stepSeconds);
+
+    for (int i = 0 ; i < steps ; i++) {
+
+      double volts = limitSimCurrent(ShooterConstants.kUseRioVelocityLoop ? simVoltageOutput()
+                                                                          : simControllerOutput() * batteryVoltage);
+
+      m_flywheelSim.setInputVoltage(volts);
+      m_flywheelSim.update(stepSeconds);
+
+      m_simVelocityRpm = m_flywheelSim.getAngularVelocityRPM() * ShooterConstants.kShooterGearing;
+    }
+  }
+
+
+
+  // what the SparkMax is putting out in voltage mode for the roboRIO loop
+
+  private double simVoltageOutput() {
+
+    if (m_shooterVoltageOutput.getControlType() != CANSparkMax.ControlType.kVoltage) {
+      return 0.0;
+    }
+
+    return m_shooterVoltageOutput.get();
+  }
+
+
+
+  // what the SparkMax would be putting out (-1 to 1) for the last thing we sent it
+  //
+  // velocity mode is the SparkMax's PID: FF * setpoint + P * error + the I accumulator + D * change in error,
+  // clamped to the output range - the I accumulator only builds inside the I zone (if there is one)
+
+  private double simControllerOutput() {
+
+    CANSparkMax.ControlType controlType = m_shooterOutput.getControlType();
+
+    if (controlType != CANSparkMax.ControlType.kVelocity) {
+
+      m_simIAccum    = 0.0;
+      m_simLastError = 0.0;
+
+      return controlType == CANSparkMax.ControlType.kDutyCycle ? m_shooterOutput.get() : 0.0;
+    }
+
+    double setpoint = m_shooterOutput.get();
+    double error    = setpoint - m_simVelocityRpm;
+
+    if (ShooterConstants.kShooterPidIzone == 0.0 || Math.abs(error) <= ShooterConstants.kShooterPidIzone) {
+      m_simIAccum += ShooterConstants.kShooterPidI * error;
+    } else {
+      m_simIAccum = 0.0;
+    }
+
+    double output = ShooterConstants.kShooterPidFF * setpoint
+                    + ShooterConstants.kShooterPidP * error
+                    + m_simIAccum
+                    + ShooterConstants.kShooterPidD * (error - m_simLastError);
+
+    m_simLastError = error;
+
+    return MathUtil.clamp(output, ShooterConstants.kShooterPidOutputMin, ShooterConstants.kShooterPidOutputMax);
+  }
+
+
+
+  // the SparkMax smart current limit - if the voltage we want would pull more than the limit at the current speed,
+  // back the voltage off to what pulls exactly the limit
+
+  private double limitSimCurrent(double volts) {
+
+    double motorSpeed = m_flywheelSim.getAngularVelocityRadPerSec() * ShooterConstants.kShooterGearing;
+    double current    = m_shooterGearbox.getCurrent(motorSpeed, volts);
+
+    if (Math.abs(current) <= ShooterConstants.kShooterMotorCurrentLimit) {
+      return volts;
+    }
+
+    double limitTorque = m_shooterGearbox.getTorque(Math.copySign(ShooterConstants.kShooterMotorCurrentLimit, current));
+
+    return m_shooterGearbox.getVoltage(limitTorque, motorSpeed);
   }
 
 
@@ -241,5 +927,10 @@ public class ShooterSubsystem extends SubsystemBase {
     super.initSendable(builder);
 
     builder.addDoubleProperty("Shooter RPM (send)", () -> getShooterVelocity(), null);
+    builder.addDoubleProperty("Shooter Spin-up ms (send)",    () -> getSpinUpTimeMs(), null);
+    builder.addDoubleProperty("Shooter Overshoot RPM (send)", () -> getOvershootRpm(), null);
+    builder.addDoubleProperty("Shooter Predicted Time To Speed (send)", () -> getPredictedTimeToSpeed(), null);
+    builder.addDoubleProperty("Shooter CAN Writes Sent (send)",       () -> m_shooterOutput.getSentCount(), null);
+    builder.addDoubleProperty("Shooter CAN Writes Suppressed (send)", () -> m_shooterOutput.getSuppressedCount(), null);
   }
 }
\ No newline at end of file
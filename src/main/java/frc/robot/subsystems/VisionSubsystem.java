@@ -14,33 +14,112 @@
 
 package frc.robot.subsystems;
 
+import java.util.EnumSet;
+
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Robot;
+import frc.robot.LoopTimer;
+import frc.robot.VisionSampleSlot;
+import frc.robot.VisionSimFeed;
 import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.VisionConstants;
 
 
 
 public class VisionSubsystem extends SubsystemBase {
 
-    private final static double kRangeTolerance = 1;                                         // we can generate ranges between min - this and max + this
-                                                                                             // to go slightly outside the shootable range
-    private final static double kMinRange = ShooterConstants.kMinShootRange.in(Meters);      // used for generating random ranges between these values
-    private final static double kMaxRange = ShooterConstants.kMaxShootRange.in(Meters);      // We can generate ranges less or more than the min/max
+    // target data gets decoded on the NetworkTables listener thread as soon as it shows up and dropped into the
+    // sample slot - the robot loop picks up the latest sample once a cycle in periodic() without ever waiting on
+    // NetworkTables or the listener thread
+    //
+    // everything the rest of the robot asks us for comes from that once-a-cycle copy so every caller in a cycle
+    // gets the same answer
+
+    private final VisionSampleSlot m_latestSample = new VisionSampleSlot();
+
+    private final NetworkTableInstance m_instance;
+
+    private final DoubleArraySubscriber m_targetSubscriber;
+
+    private final int m_targetListener;
+
+    private VisionSimFeed m_simFeed;
+
+    private volatile long m_decodeErrors = 0;     // only written by the listener thread
+
+    private final int m_periodicTimingSlot = LoopTimer.register("VisionSubsystem.periodic()");
 
 
 
     public VisionSubsystem() {
 
-        // nothing to do right now...
+        this(NetworkTableInstance.getDefault());
+    }
+
+
+
+    public VisionSubsystem(NetworkTableInstance instance) {
+
+        m_instance = instance;
+
+        m_targetSubscriber = instance.getDoubleArrayTopic(VisionConstants.kTargetDataTopic).subscribe(new double[0]);
+
+        m_targetListener = instance.addListener(m_targetSubscriber,
+                                                EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+                                                event -> decodeTargetData(event.valueData.value));
+
+        if ( ! Robot.isReal()) {                  // nobody else is going to send us target data in simulation
+
+            m_simFeed = new VisionSimFeed(instance);
+            m_simFeed.start();
+        }
+    }
+
+
+
+    // runs on the NetworkTables listener thread - not the robot loop
+
+    private void decodeTargetData(NetworkTableValue value) {
+
+        double[] targetData = value.getDoubleArray();
+
+        if (targetData.length < VisionConstants.kTargetDataLength) {
+            m_decodeErrors++;
+            return;
+        }
+
+        // NT timestamps are in microseconds on the same clock as the FPGA timestamp - back it up by the pipeline
+        // latency to get when the picture was actually taken
+
+        double captureTimestamp = value.getTime() / 1.0e6 - targetData[VisionConstants.kTargetDataLatency] / 1000.0;
+
+        m_latestSample.write(targetData[VisionConstants.kTargetDataHasTarget] > 0.5,
+                             targetData[VisionConstants.kTargetDataRange],
+                             targetData[VisionConstants.kTargetDataYaw],
+                             captureTimestamp);
     }
 
 
+
+    public boolean hasTarget() {
+
+        return m_latestSample.hasTarget();
+    }
+
+
+
     public Boolean isTargetWithinRange() {
 
         double range = getRangeToTarget();
         
-        if (range >= ShooterConstants.kMinShootRange.in(Meters) && range <= ShooterConstants.kMaxShootRange.in(Meters)) {
+        if (hasTarget() && range >= ShooterConstants.kMinShootRange.in(Meters) && range <= ShooterConstants.kMaxShootRange.in(Meters)) {
             return true;
         }
 
@@ -49,20 +128,69 @@ public class VisionSubsystem extends SubsystemBase {
 
 
 
+    // range from the latest vision sample - NaN if we've never gotten one
+
     public double getRangeToTarget() {
 
-        // for now we just generate a random range - when we have actual vision-based ranging, we'll pickup the
-        // range to the target from the vision system (most likely through network tables entries)
-        //
-        // the generated range runs between the min and max values and can go the tolerance value above or below
-        // the min to max band so we get some out of range random values
-        //
-        // this makes our effective random range values range from (min - tolerance) to (max + tolerance)
-        //
-        // we need to do this because the random() function returns a random double between 0.0 and 1.0
-
-        double randomRange = Math.random() * (kMaxRange - kMinRange + 2 * kRangeTolerance) + (kMinRange - kRangeTolerance);
-
-        return randomRange;
-    }  
-}
\ No newline at end of file
+        return m_latestSample.getRangeMeters();
+    }
+
+
+
+    public double getYawToTarget() {
+
+        return m_latestSample.getYawDegrees();
+    }
+
+
+
+    // FPGA time (seconds) the latest sample's picture was taken
+
+    public double getRangeTimestamp() {
+
+        return m_latestSample.getCaptureTimestamp();
+    }
+
+
+
+    // goes up every time a new sample comes in - 0 if we've never had one
+
+    public long getSampleSequence() {
+
+        return m_latestSample.getSequence();
+    }
+
+
+
+    public long getDecodeErrors() {
+
+        return m_decodeErrors;
+    }
+
+
+
+    public void close() {
+
+        m_instance.removeListener(m_targetListener);
+        m_targetSubscriber.close();
+
+        if (m_simFeed != null) {
+            m_simFeed.stop();
+        }
+    }
+
+
+
+/* Periodics ************************************************************************************
+ ************************************************************************************************/
+
+    @Override
+    public void periodic() {
+
+        long startTime = LoopTimer.start();
+
+        m_latestSample.read();          // pick up the latest sample (if there is a new one) for this cycle
+
+        LoopTimer.stop(m_periodicTimingSlot, startTime);
+    }
+}
@@ -0,0 +1,433 @@
+package frc.robot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+
+// batch simulation - sweeps a set of parameters through the headless sim
+//
+// the HAL sim is one per process so two sims can't share a JVM - instead this starts a separate JVM running
+// HeadlessSim for every combination of parameters, with as many of them going at once as we have cores. each
+// worker gets its own slice of the runs and works through it one JVM at a time
+//
+//     ./gradlew simBatch -Pbatch.args="spin=-0.6:0.6:0.1 x=1.35,2.5 auto=15 teleop=0"
+//
+// every name=value argument is passed on to HeadlessSim (see it for the names) - a value can be
+//
+//   a single value           auto=15
+//   a list                   x=1.35,2.5
+//   a range start:end:step   spin=-0.6:0.6:0.1
+//
+// and every combination of all of them gets run. a couple of arguments are for us and not passed on:
+//
+//   workers - how many JVMs to run at once (default is one per core)
+//   report  - where to write the CSV of every run (default batchsim-report.csv)
+//
+// each run's RESULT line gets collected, everything goes in the report and a summary gets printed at the end
+
+public final class BatchSim {
+
+    private static final long kRunTimeoutSeconds = 300;        // a single run that takes longer than this is stuck
+
+
+
+    private BatchSim() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    private static final class Run {
+
+        private final int          m_number;
+        private final List<String> m_args;                      // name=value for HeadlessSim
+
+        private Map<String, String> m_result = null;            // null if the run didn't produce a RESULT line
+        private String              m_failure = "";
+        private String              m_lastLine = "";            // the last thing it printed - for the failure message
+        private double              m_wallSeconds;
+
+
+
+        private Run(int number, List<String> args) {
+
+            m_number = number;
+            m_args   = args;
+        }
+    }
+
+
+
+    public static void main(String... args) throws Exception {
+
+        int    workers    = Runtime.getRuntime().availableProcessors();
+        String reportFile = "batchsim-report.csv";
+
+        LinkedHashMap<String, List<String>> sweep = new LinkedHashMap<>();
+
+        for (String arg : args) {
+
+            String[] pair = arg.split("=", 2);
+
+            if (pair.length != 2) {
+                System.err.println("BatchSim: ignoring " + arg + " - arguments are name=value");
+                continue;
+            }
+
+            switch (pair[0]) {
+
+                case "workers":
+                    workers = Math.max(1, Integer.parseInt(pair[1]));
+                    break;
+
+                case "report":
+                    reportFile = pair[1];
+                    break;
+
+                default:
+                    sweep.put(pair[0], expand(pair[1]));
+                    break;
+            }
+        }
+
+        List<Run> runs = combinations(sweep);
+
+        System.out.println("BatchSim: " + runs.size() + " runs on " + workers + " workers");
+
+        long startTime = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> slices = new ArrayList<>();
+
+        for (int worker = 0 ; worker < workers ; worker++) {
+
+            int first = worker;
+            int step  = workers;
+
+            slices.add(pool.submit(() -> {
+
+                for (int i = first ; i < runs.size() ; i += step) {
+                    runOne(runs.get(i));
+                }
+            }));
+        }
+
+        for (Future<?> slice : slices) {
+            slice.get();
+        }
+
+        pool.shutdown();
+
+        double wallSeconds = (System.nanoTime() - startTime) / 1.0e9;
+
+        writeReport(Path.of(reportFile), sweep, runs);
+
+        printSummary(runs, wallSeconds, reportFile);
+    }
+
+
+
+    // a single value, a comma separated list or start:end:step
+
+    private static List<String> expand(String value) {
+
+        List<String> values = new ArrayList<>();
+
+        String[] range = value.split(":");
+
+        if (range.length == 3) {
+
+            double start = Double.parseDouble(range[0]);
+            double end   = Double.parseDouble(range[1]);
+            double step  = Double.parseDouble(range[2]);
+
+            if (step == 0.0 || (end - start) / step < 0.0) {
+                throw new IllegalArgumentException("BatchSim: range " + value + " never gets from start to end");
+            }
+
+            long count = (long)Math.floor((end - start) / step + 1.0e-9);
+
+            for (long i = 0 ; i <= count ; i++) {
+                values.add(Double.toString(start + i * step));          // multiply, don't add, so errors don't build up
+            }
+
+            return values;
+        }
+
+        for (String item : value.split(",")) {
+            values.add(item.trim());
+        }
+
+        return values;
+    }
+
+
+
+    private static List<Run> combinations(LinkedHashMap<String, List<String>> sweep) {
+
+        List<List<String>> combos = new ArrayList<>();
+
+        combos.add(new ArrayList<>());
+
+        for (Map.Entry<String, List<String>> entry : sweep.entrySet()) {
+
+            List<List<String>> next = new ArrayList<>();
+
+            for (List<String> combo : combos) {
+
+                for (String value : entry.getValue()) {
+
+                    List<String> extended = new ArrayList<>(combo);
+
+                    extended.add(entry.getKey() + "=" + value);
+                    next.add(extended);
+                }
+            }
+
+            combos = next;
+        }
+
+        List<Run> runs = new ArrayList<>();
+
+        for (List<String> combo : combos) {
+            runs.add(new Run(runs.size(), combo));
+        }
+
+        return runs;
+    }
+
+
+
+    // start a JVM running HeadlessSim with this run's arguments and wait for its RESULT line
+    //
+    // each run gets its own working directory so nothing one sim writes out can trip up another - it gets deleted
+    // once the run is over
+    //
+    // the output gets read on its own thread so a sim that hangs without closing its output can't hold us past the
+    // timeout - if the deadline passes it gets killed, which closes the output and lets the reader finish
+
+    private static void runOne(Run run) {
+
+        long startTime = System.nanoTime();
+
+        List<String> command = new ArrayList<>();
+
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+        command.add(HeadlessSim.class.getName());
+        command.addAll(run.m_args);
+
+        Path workingDir = null;
+
+        try {
+
+            workingDir = Files.createTempDirectory("batchsim-" + run.m_number + "-");
+
+            Process process = new ProcessBuilder(command).directory(workingDir.toFile())
+                                                         .redirectErrorStream(true)
+                                                         .start();
+
+            Thread reader = new Thread(() -> readOutput(run, process), "BatchSim-output-" + run.m_number);
+
+            reader.setDaemon(true);
+            reader.start();
+
+            boolean finished = process.waitFor(kRunTimeoutSeconds, TimeUnit.SECONDS);
+
+            if ( ! finished) {
+                process.destroyForcibly();
+                process.waitFor();
+            }
+
+            reader.join();                              // everything it saw is in run once this returns
+
+            if ( ! finished) {
+                run.m_failure = "timed out";
+            } else if (run.m_result == null) {
+                run.m_failure = "exit " + process.exitValue() + ": " + run.m_lastLine;
+            }
+        }
+        catch (IOException e) {
+            run.m_failure = e.toString();
+        }
+        catch (InterruptedException e) {
+            run.m_failure = "interrupted";
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            deleteDirectory(workingDir);
+        }
+
+        run.m_wallSeconds = (System.nanoTime() - startTime) / 1.0e9;
+
+        System.out.println("BatchSim: run " + run.m_number + " " + String.join(" ", run.m_args)
+                           + (run.m_result != null ? " done" : " FAILED - " + run.m_failure));
+    }
+
+
+
+    // runs on the run's output thread until the process closes its output
+
+    private static void readOutput(Run run, Process process) {
+
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+
+            String line;
+
+            while ((line = output.readLine()) != null) {
+
+                if (line.startsWith("RESULT")) {
+                    run.m_result = parseResult(line);
+                } else if ( ! line.isBlank()) {
+                    run.m_lastLine = line;
+                }
+            }
+        }
+        catch (IOException e) {
+            run.m_lastLine = e.toString();              // the process went away under us - its exit says why
+        }
+    }
+
+
+
+    // the sim leaves networktables.json and the like behind - a sweep can be hundreds of runs
+
+    private static void deleteDirectory(Path dir) {
+
+        if (dir == null) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+
+            paths.sorted(Comparator.reverseOrder())         // everything inside before the directory itself
+                 .forEach(path -> path.toFile().delete());
+        }
+        catch (IOException e) {
+            System.err.println("BatchSim: couldn't clean up " + dir + " - " + e);
+        }
+    }
+
+
+
+    private static Map<String, String> parseResult(String line) {
+
+        Map<String, String> result = new LinkedHashMap<>();
+
+        for (String field : line.split(" ")) {
+
+            String[] pair = field.split("=", 2);
+
+            if (pair.length == 2) {
+                result.put(pair[0], pair[1]);
+            }
+        }
+
+        return result;
+    }
+
+
+
+    // one row per run - the swept parameters, then everything from its RESULT line
+
+    private static void writeReport(Path file, LinkedHashMap<String, List<String>> sweep, List<Run> runs) throws IOException {
+
+        List<String> resultColumns = new ArrayList<>();
+
+        for (Run run : runs) {
+
+            if (run.m_result != null) {
+                resultColumns.addAll(run.m_result.keySet());
+                break;
+            }
+        }
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+
+            List<String> header = new ArrayList<>();
+
+            header.add("run");
+            header.addAll(sweep.keySet());
+            header.addAll(resultColumns);
+            header.add("processSeconds");
+            header.add("failure");
+
+            out.println(String.join(",", header));
+
+            for (Run run : runs) {
+
+                List<String> row = new ArrayList<>();
+
+                row.add(Integer.toString(run.m_number));
+
+                for (String arg : run.m_args) {
+                    row.add(arg.substring(arg.indexOf('=') + 1));
+                }
+
+                for (String column : resultColumns) {
+                    row.add(run.m_result != null ? run.m_result.getOrDefault(column, "") : "");
+                }
+
+                row.add(Double.toString(run.m_wallSeconds));
+                row.add(run.m_failure.replace(',', ';'));
+
+                out.println(String.join(",", row));
+            }
+        }
+    }
+
+
+
+    private static void printSummary(List<Run> runs, double wallSeconds, String reportFile) {
+
+        int    completed   = 0;
+        double simSeconds  = 0.0;
+        long   overruns    = 0;
+        long   maxOverruns = 0;
+
+        Run worstRun = null;
+
+        for (Run run : runs) {
+
+            if (run.m_result == null) {
+                continue;
+            }
+
+            completed++;
+
+            simSeconds += Double.parseDouble(run.m_result.getOrDefault("simSeconds", "0"));
+
+            long runOverruns = Long.parseLong(run.m_result.getOrDefault("overruns", "0"));
+
+            overruns += runOverruns;
+
+            if (worstRun == null || runOverruns > maxOverruns) {
+                maxOverruns = runOverruns;
+                worstRun    = run;
+            }
+        }
+
+        System.out.println("BatchSim: " + completed + " of " + runs.size() + " runs completed in " + wallSeconds + " s");
+        System.out.println("BatchSim: " + simSeconds + " sim seconds total - " + (simSeconds / wallSeconds) + " sim seconds per wall second");
+        System.out.println("BatchSim: " + overruns + " loop overruns total"
+                           + (worstRun != null && maxOverruns > 0 ? " - worst was run " + worstRun.m_number + " with " + maxOverruns : ""));
+        System.out.println("BatchSim: every run is in " + reportFile);
+    }
+}
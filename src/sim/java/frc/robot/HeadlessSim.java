@@ -0,0 +1,289 @@
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.SimConstants;
+import frc.robot.commands.SpinInCircleCommand;
+import frc.robot.subsystems.DriveSubsystem;
+
+
+
+// headless, faster than real time simulation
+//
+// the regular sim (./gradlew simulateJava) runs the robot in real time with the GUI - checking an auto takes 15
+// seconds and a whole match takes 2:15, every time
+//
+// this runs the same Robot class with no GUI and with the sim clock paused - we step the clock ourselves one robot
+// period at a time and call the robot's methods in the same order TimedRobot would, so everything that goes by the
+// FPGA clock (the scheduler, timeouts, Notifiers, the physics) sees time moving normally, it just doesn't have to
+// wait for it. a whole match runs as fast as the CPU can get through the cycles
+//
+//     ./gradlew simHeadless
+//     ./gradlew simHeadless -Psim.args="auto=15 teleop=0"
+//
+// arguments are name=value pairs:
+//
+//   disabled, auto, teleop - the number of seconds to spend in each mode (defaults from SimConstants)
+//   x, y, heading          - starting pose in meters and degrees (default is wherever the drivetrain starts)
+//   spin                   - run SpinInCircleCommand at this speed for autonomous instead of the normal auto
+//
+// when it's done it prints a single line starting with RESULT with name=value pairs (how fast it ran, where the
+// robot ended up, loop overruns) - that's what the batch runner picks up
+//
+// the HAL sim is one per process so this can only run one robot per JVM
+
+public final class HeadlessSim {
+
+    private HeadlessSim() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    private enum Mode { kDisabled, kAutonomous, kTeleop }
+
+
+
+    // what to run - NaN means leave it alone
+
+    private static final class Options {
+
+        private double m_disabledSeconds = SimConstants.kDisabledLength.in(Seconds);
+        private double m_autoSeconds     = SimConstants.kAutoLength.in(Seconds);
+        private double m_teleopSeconds   = SimConstants.kTeleopLength.in(Seconds);
+
+        private double m_startX              = Double.NaN;
+        private double m_startY              = Double.NaN;
+        private double m_startHeadingDegrees = Double.NaN;
+
+        private double m_spinSpeed           = Double.NaN;
+    }
+
+
+
+    public static void main(String... args) {
+
+        Options options = new Options();
+
+        for (String arg : args) {
+
+            String[] pair = arg.split("=", 2);
+
+            if (pair.length != 2) {
+                System.err.println("HeadlessSim: ignoring " + arg + " - arguments are name=value");
+                continue;
+            }
+
+            double value = Double.parseDouble(pair[1]);
+
+            switch (pair[0]) {
+
+                case "disabled":
+                    options.m_disabledSeconds = value;
+                    break;
+
+                case "auto":
+                    options.m_autoSeconds = value;
+                    break;
+
+                case "teleop":
+                    options.m_teleopSeconds = value;
+                    break;
+
+                case "x":
+                    options.m_startX = value;
+                    break;
+
+                case "y":
+                    options.m_startY = value;
+                    break;
+
+                case "heading":
+                    options.m_startHeadingDegrees = value;
+                    break;
+
+                case "spin":
+                    options.m_spinSpeed = value;
+                    break;
+
+                default:
+                    System.err.println("HeadlessSim: ignoring unknown argument " + arg);
+                    break;
+            }
+        }
+
+        String result = run(options);
+
+        System.out.println(result);
+
+        System.exit(0);                         // the robot leaves Notifier and vendor threads running
+    }
+
+
+
+    // run one robot through disabled, autonomous and teleop and return the RESULT line
+
+    private static String run(Options options) {
+
+        if ( ! HAL.initialize(500, 0)) {
+            throw new IllegalStateException("HeadlessSim: failed to initialize the HAL");
+        }
+
+        SimHooks.pauseTiming();                 // nothing moves the clock but us from here on
+
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+
+        Robot robot = new Robot();
+
+        // the robot starts a NetworkTables server - we don't want one per run (they'd all fight over the port when
+        // the batch runner starts a bunch of these at once) or the persistent file getting written
+
+        NetworkTableInstance.getDefault().stopServer();
+
+        long wallStart = System.nanoTime();
+
+        robot.robotInit();
+        robot.simulationInit();
+
+        RobotContainer container = robot.getRobotContainer();
+        DriveSubsystem drive     = container.m_drivetrainSubsystem;
+
+        if ( ! Double.isNaN(options.m_startX) || ! Double.isNaN(options.m_startY) || ! Double.isNaN(options.m_startHeadingDegrees)) {
+
+            double[] start = new double[3];
+
+            drive.getPose(start);                   // anything not given stays where it was
+
+            drive.resetPose(Double.isNaN(options.m_startX) ? start[0] : options.m_startX,
+                            Double.isNaN(options.m_startY) ? start[1] : options.m_startY,
+                            Math.toRadians(Double.isNaN(options.m_startHeadingDegrees) ? start[2] : options.m_startHeadingDegrees));
+        }
+
+        if ( ! Double.isNaN(options.m_spinSpeed)) {
+            container.setAutonomousOverride(new SpinInCircleCommand(drive, options.m_spinSpeed));
+        }
+
+        long cycles = 0;
+
+        cycles += runMode(robot, Mode.kDisabled,   options.m_disabledSeconds);
+        cycles += runMode(robot, Mode.kAutonomous, options.m_autoSeconds);
+        cycles += runMode(robot, Mode.kTeleop,     options.m_teleopSeconds);
+
+        double wallSeconds = (System.nanoTime() - wallStart) / 1.0e9;
+        double simSeconds  = cycles * TimedRobot.kDefaultPeriod;
+
+        double[] pose = new double[3];
+
+        drive.getPose(pose);
+
+        return "RESULT"
+               + " simSeconds="      + simSeconds
+               + " wallSeconds="     + wallSeconds
+               + " simPerWall="      + (simSeconds / wallSeconds)
+               + " cycles="          + cycles
+               + " x="               + pose[0]
+               + " y="               + pose[1]
+               + " headingDegrees="  + pose[2]
+               + " overruns="        + LoopTimer.getOverrunCount();
+    }
+
+
+
+    // the same calls TimedRobot makes for a mode - the init once, then every period the mode's periodic,
+    // robotPeriodic() and simulationPeriodic(), and the load governor gets the period's time the same way
+    // Robot.loopFunc() hands it over
+
+    private static long runMode(Robot robot, Mode mode, double seconds) {
+
+        long cycles = Math.round(seconds / TimedRobot.kDefaultPeriod);
+
+        if (cycles <= 0) {
+            return 0;
+        }
+
+        DriverStationSim.setEnabled(mode != Mode.kDisabled);
+        DriverStationSim.setAutonomous(mode == Mode.kAutonomous);
+        DriverStationSim.notifyNewData();
+
+        switch (mode) {
+
+            case kDisabled:
+                robot.disabledInit();
+                break;
+
+            case kAutonomous:
+                robot.autonomousInit();
+                break;
+
+            case kTeleop:
+                robot.teleopInit();
+                break;
+        }
+
+        for (long i = 0 ; i < cycles ; i++) {
+
+            stepToNextCycle();
+
+            DriverStationSim.notifyNewData();
+
+            long loopStart = System.nanoTime();
+
+            switch (mode) {
+
+                case kDisabled:
+                    robot.disabledPeriodic();
+                    break;
+
+                case kAutonomous:
+                    robot.autonomousPeriodic();
+                    break;
+
+                case kTeleop:
+                    robot.teleopPeriodic();
+                    break;
+            }
+
+            robot.robotPeriodic();
+            robot.simulationPeriodic();
+
+            Robot.governPeriod(loopStart);
+        }
+
+        return cycles;
+    }
+
+
+
+    // move the clock up to the next main loop run, stopping along the way for everything on the MultiRateScheduler
+    // (TimedRobot.addPeriodic() on the robot) that comes due before it - stepping the clock also lets any Notifiers
+    // that came due run
+
+    private static void stepToNextCycle() {
+
+        double now     = Timer.getFPGATimestamp();
+        double cycleAt = now + TimedRobot.kDefaultPeriod;
+
+        double due;
+
+        while ((due = MultiRateScheduler.getNextDueTime()) < cycleAt) {
+
+            if (due > now) {
+                SimHooks.stepTiming(due - now);
+                now = due;
+            }
+
+            MultiRateScheduler.runDue(now);
+        }
+
+        SimHooks.stepTiming(cycleAt - now);
+    }
+}
@@ -0,0 +1,439 @@
+package frc.robot;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static edu.wpi.first.units.Units.*;
+
+import frc.robot.Constants.RobotConstants;
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.ShotSimConstants;
+
+
+
+// offline shot table generator
+//
+// the speed and angle tables in the shooter subsystems were guesses - this works them out from a model of the note's
+// flight instead
+//
+// the note leaves the shooter at a speed that comes from the flywheel RPM (see kExitEfficiency) with backspin, and
+// flies under gravity, drag and the lift from its spin until it gets to the range we're shooting from. a shot is a hit
+// if it's inside the speaker opening at that point
+//
+// for every range bucket from kMinShootRange to kMaxShootRange we try every RPM / angle combination, throw away the
+// ones that don't come anywhere near the opening and run kTrialsPerCandidate Monte Carlo shots of what's left with
+// everything varied the way it varies on the real robot (RPM, angle, vision range, note to note). the one with the
+// best hit probability wins - if two are close, the lower RPM wins since it spins up faster and is easier on the
+// battery
+//
+// each bucket is independent so they run in parallel on a fork-join pool. each bucket gets its own random number
+// generator seeded from its index so the same arguments always produce the same tables
+//
+//     ./gradlew simShotTables
+//     ./gradlew simShotTables -Pshot.args="angle=45"
+//
+// arguments are name=value pairs:
+//
+//   angle   - only try this angle (the 2024 robot has a fixed shooter angle)
+//   trials  - Monte Carlo shots per candidate (default kTrialsPerCandidate)
+//   threads - fork-join pool size (default one per core)
+//   seed    - base random seed
+//   out     - where to write the tables (default shot-tables.txt)
+//
+// the tables come out in exactly the form the subsystems declare them so they can be pasted straight in, followed by
+// the hit probability and how many trajectories a second each bucket got through
+
+public final class ShotTableGenerator {
+
+    private static final double kGravity = 9.81;
+
+    private static final double kDragPerSpeed = 0.5 * ShotSimConstants.kAirDensity * ShotSimConstants.kNoteDragCoeff
+                                                * ShotSimConstants.kNoteFrontalArea / ShotSimConstants.kNoteMass;
+
+    private static final double kLiftPerSpeed = 0.5 * ShotSimConstants.kAirDensity
+                                                * ShotSimConstants.kNoteFrontalArea / ShotSimConstants.kNoteMass;
+
+    private static final double kTargetLow    = ShotSimConstants.kTargetLowHeight.in(Meters);
+    private static final double kTargetHigh   = ShotSimConstants.kTargetHighHeight.in(Meters);
+    private static final double kTargetCenter = (kTargetLow + kTargetHigh) / 2.0;
+
+    // candidates whose nominal shot misses the opening by more than this don't get any Monte Carlo trials
+
+    private static final double kCandidateMargin = 0.15;
+
+    private static final int kRowsPerLine = 4;
+
+    // per bucket results - each bucket task only writes its own index
+
+    private static double[] m_ranges;
+    private static double[] m_rpms;
+    private static double[] m_angles;
+    private static double[] m_hitProbabilities;
+    private static long[]   m_trajectories;
+    private static double[] m_bucketSeconds;
+
+    private static double m_fixedAngle = Double.NaN;
+    private static int    m_trials     = ShotSimConstants.kTrialsPerCandidate;
+    private static long   m_seed       = 2151;
+
+
+
+    private ShotTableGenerator() {
+        throw new UnsupportedOperationException("This is a utility class!");
+    }
+
+
+
+    public static void main(String... args) throws IOException {
+
+        int    threads = Runtime.getRuntime().availableProcessors();
+        String outFile = "shot-tables.txt";
+
+        for (String arg : args) {
+
+            String[] pair = arg.split("=", 2);
+
+            if (pair.length != 2) {
+                System.err.println("ShotTableGenerator: ignoring " + arg + " - arguments are name=value");
+                continue;
+            }
+
+            switch (pair[0]) {
+
+                case "angle":
+                    m_fixedAngle = Double.parseDouble(pair[1]);
+                    break;
+
+                case "trials":
+                    m_trials = Math.max(1, Integer.parseInt(pair[1]));
+                    break;
+
+                case "threads":
+                    threads = Math.max(1, Integer.parseInt(pair[1]));
+                    break;
+
+                case "seed":
+                    m_seed = Long.parseLong(pair[1]);
+                    break;
+
+                case "out":
+                    outFile = pair[1];
+                    break;
+
+                default:
+                    System.err.println("ShotTableGenerator: ignoring unknown argument " + arg);
+                    break;
+            }
+        }
+
+        double minRange = ShooterConstants.kMinShootRange.in(Meters);
+        double maxRange = ShooterConstants.kMaxShootRange.in(Meters);
+        double step     = ShotSimConstants.kRangeBucket.in(Meters);
+
+        int buckets = (int)Math.floor((maxRange - minRange) / step + 1.0e-9) + 1;
+
+        m_ranges           = new double[buckets];
+        m_rpms             = new double[buckets];
+        m_angles           = new double[buckets];
+        m_hitProbabilities = new double[buckets];
+        m_trajectories     = new long[buckets];
+        m_bucketSeconds    = new double[buckets];
+
+        for (int i = 0 ; i < buckets ; i++) {
+            m_ranges[i] = Math.min(minRange + i * step, maxRange);
+        }
+
+        m_ranges[buckets - 1] = maxRange;           // always finish exactly at the max so the tables cover the whole band
+
+        long startTime = System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        pool.invoke(new BucketTask(0, buckets));
+        pool.shutdown();
+
+        double wallSeconds = (System.nanoTime() - startTime) / 1.0e9;
+
+        String tables = formatTables();
+
+        System.out.println(tables);
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Path.of(outFile)))) {
+            out.print(tables);
+        }
+
+        printReport(wallSeconds, threads);
+
+        System.out.println("ShotTableGenerator: tables written to " + outFile);
+    }
+
+
+
+    /* Fork-join ********************************************************************************
+     ********************************************************************************************/
+
+    // keeps splitting the buckets in half until each task has just one
+
+    private static final class BucketTask extends RecursiveAction {
+
+        private final int m_first;
+        private final int m_end;
+
+
+
+        private BucketTask(int first, int end) {
+
+            m_first = first;
+            m_end   = end;
+        }
+
+
+
+        @Override
+        protected void compute() {
+
+            if (m_end - m_first == 1) {
+                solveBucket(m_first);
+                return;
+            }
+
+            int middle = (m_first + m_end) >>> 1;
+
+            invokeAll(new BucketTask(m_first, middle), new BucketTask(middle, m_end));
+        }
+    }
+
+
+
+    /* Search ***********************************************************************************
+     ********************************************************************************************/
+
+    private static void solveBucket(int bucket) {
+
+        long startTime = System.nanoTime();
+
+        SplittableRandom random = new SplittableRandom(m_seed * 31 + bucket);
+
+        double range = m_ranges[bucket];
+
+        double minAngle  = Double.isNaN(m_fixedAngle) ? ShotSimConstants.kMinAngleDegrees : m_fixedAngle;
+        double maxAngle  = Double.isNaN(m_fixedAngle) ? ShotSimConstants.kMaxAngleDegrees : m_fixedAngle;
+        double angleStep = ShotSimConstants.kAngleStepDegrees;
+
+        double bestRpm         = Double.NaN;
+        double bestAngle       = Double.NaN;
+        double bestProbability = -1.0;
+
+        double closestRpm   = RobotConstants.kNeoMaxRpm;        // the nearest miss - only used if nothing can hit
+        double closestAngle = (minAngle + maxAngle) / 2.0;
+        double closestMiss  = Double.MAX_VALUE;
+
+        long trajectories = 0;
+
+        for (double rpm = ShotSimConstants.kMinRpm ; rpm <= RobotConstants.kNeoMaxRpm ; rpm += ShotSimConstants.kRpmStep) {
+
+            for (double angle = minAngle ; angle <= maxAngle + 1.0e-9 ; angle += angleStep) {
+
+                double height = heightAtRange(rpm, Math.toRadians(angle), ShotSimConstants.kExitEfficiency, range);
+
+                trajectories++;
+
+                if (Double.isNaN(height)) {
+                    continue;
+                }
+
+                double miss = Math.abs(height - kTargetCenter);
+
+                if (miss < closestMiss) {
+                    closestMiss  = miss;
+                    closestRpm   = rpm;
+                    closestAngle = angle;
+                }
+
+                if (height < kTargetLow - kCandidateMargin || height > kTargetHigh + kCandidateMargin) {
+                    continue;
+                }
+
+                double probability = hitProbability(random, rpm, angle, range);
+
+                trajectories += m_trials;
+
+                // only take a higher RPM if it's better by more than one trial's worth
+
+                if (probability > bestProbability + 1.0 / m_trials) {
+                    bestProbability = probability;
+                    bestRpm         = rpm;
+                    bestAngle       = angle;
+                }
+            }
+        }
+
+        if (bestProbability <= 0.0) {               // out of reach - the closest we can get is the best we can do
+            bestRpm         = closestRpm;
+            bestAngle       = closestAngle;
+            bestProbability = 0.0;
+        }
+
+        m_rpms[bucket]             = bestRpm;
+        m_angles[bucket]           = bestAngle;
+        m_hitProbabilities[bucket] = bestProbability;
+        m_trajectories[bucket]     = trajectories;
+        m_bucketSeconds[bucket]    = (System.nanoTime() - startTime) / 1.0e9;
+    }
+
+
+
+    private static double hitProbability(SplittableRandom random, double rpm, double angle, double range) {
+
+        int hits = 0;
+
+        for (int trial = 0 ; trial < m_trials ; trial++) {
+
+            double trialRpm        = rpm + random.nextGaussian() * ShotSimConstants.kRpmNoise;
+            double trialAngle      = angle + random.nextGaussian() * ShotSimConstants.kAngleNoiseDegrees;
+            double trialEfficiency = ShotSimConstants.kExitEfficiency + random.nextGaussian() * ShotSimConstants.kEfficiencyNoise;
+
+            // the range we aimed for was measured - where the speaker actually is differs by the vision error
+
+            double trialRange      = range + random.nextGaussian() * ShotSimConstants.kRangeNoise;
+
+            double height = heightAtRange(trialRpm, Math.toRadians(trialAngle), trialEfficiency, trialRange);
+
+            if (height >= kTargetLow && height <= kTargetHigh) {
+                hits++;
+            }
+        }
+
+        return (double)hits / m_trials;
+    }
+
+
+
+    /* Physics **********************************************************************************
+     ********************************************************************************************/
+
+    /**
+     * height of the note when it gets range meters out - NaN if it hits the ground or is still in the air after
+     * kMaxFlightTime before it gets there
+     *
+     * rpm is what the tables hold, the motor's RPM from its encoder - the wheel turns kShooterGearing times slower
+     */
+    static double heightAtRange(double rpm, double angleRadians, double efficiency, double range) {
+
+        double dt      = ShotSimConstants.kIntegrationStep.in(Seconds);
+        int    maxStep = (int)(ShotSimConstants.kMaxFlightTime.in(Seconds) / dt);
+
+        double wheelRpm  = rpm / ShooterConstants.kShooterGearing;
+        double exitSpeed = efficiency * wheelRpm / 60.0 * 2.0 * Math.PI * ShotSimConstants.kShooterWheelRadius;
+        double spinSpeed = ShotSimConstants.kNoteSpinRatio * exitSpeed;        // note rim speed - constant, we don't model spin decay
+
+        double x  = 0.0;
+        double z  = ShotSimConstants.kReleaseHeight.in(Meters);
+        double vx = exitSpeed * Math.cos(angleRadians);
+        double vz = exitSpeed * Math.sin(angleRadians);
+
+        for (int step = 0 ; step < maxStep ; step++) {
+
+            double speed = Math.hypot(vx, vz);
+
+            if (speed < 1.0e-6) {
+                return Double.NaN;
+            }
+
+            // backspin lifts - perpendicular to the direction of travel
+
+            double liftCoeff = Math.min(ShotSimConstants.kNoteLiftPerSpin * spinSpeed / speed, ShotSimConstants.kNoteMaxLiftCoeff);
+
+            double ax = -kDragPerSpeed * speed * vx - kLiftPerSpeed * liftCoeff * speed * vz;
+            double az = -kDragPerSpeed * speed * vz + kLiftPerSpeed * liftCoeff * speed * vx - kGravity;
+
+            double lastX = x;
+            double lastZ = z;
+
+            vx += ax * dt;
+            vz += az * dt;
+            x  += vx * dt;
+            z  += vz * dt;
+
+            if (x >= range) {
+                return lastZ + (z - lastZ) * (range - lastX) / (x - lastX);
+            }
+
+            if (z < 0.0 || vx <= 0.0) {
+                return Double.NaN;
+            }
+        }
+
+        return Double.NaN;
+    }
+
+
+
+    /* Output ***********************************************************************************
+     ********************************************************************************************/
+
+    private static String formatTables() {
+
+        StringBuilder out = new StringBuilder();
+
+        out.append("    private final InterpolatingTable m_shooterSpeedTable = new InterpolatingTable(new double[][] {\n");
+        appendRows(out, m_rpms, 10.0);
+        out.append("    });\n\n");
+
+        out.append("    private final InterpolatingTable m_shooterAngleTable = new InterpolatingTable(new double[][] {\n");
+        appendRows(out, m_angles, 0.5);
+        out.append("    });\n");
+
+        return out.toString();
+    }
+
+
+
+    private static void appendRows(StringBuilder out, double[] values, double roundTo) {
+
+        for (int i = 0 ; i < values.length ; i++) {
+
+            if (i % kRowsPerLine == 0) {
+                out.append("        ");
+            }
+
+            out.append(String.format("{%.2f, %.1f}", m_ranges[i], Math.round(values[i] / roundTo) * roundTo));
+
+            if (i < values.length - 1) {
+                out.append(i % kRowsPerLine == kRowsPerLine - 1 ? ",\n" : ", ");
+            } else {
+                out.append('\n');
+            }
+        }
+    }
+
+
+
+    private static void printReport(double wallSeconds, int threads) {
+
+        long   totalTrajectories = 0;
+        double bucketSeconds     = 0.0;
+
+        System.out.println("  range      rpm   angle   hit %   trajectories   trajectories/s");
+
+        for (int i = 0 ; i < m_ranges.length ; i++) {
+
+            System.out.println(String.format("%6.2f m %7.0f %6.1f %7.1f %14d %16.0f%s",
+                                             m_ranges[i], m_rpms[i], m_angles[i], m_hitProbabilities[i] * 100.0,
+                                             m_trajectories[i], m_trajectories[i] / m_bucketSeconds[i],
+                                             m_hitProbabilities[i] == 0.0 ? "   out of reach" : ""));
+
+            totalTrajectories += m_trajectories[i];
+            bucketSeconds     += m_bucketSeconds[i];
+        }
+
+        System.out.println("ShotTableGenerator: " + totalTrajectories + " trajectories in " + wallSeconds + " s on "
+                           + threads + " threads - " + (long)(totalTrajectories / wallSeconds) + " trajectories/s ("
+                           + String.format("%.1f", bucketSeconds / wallSeconds) + "x parallel speedup)");
+    }
+}
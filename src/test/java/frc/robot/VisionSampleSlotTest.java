@@ -0,0 +1,105 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+
+
+// the vision sample slot is handed between the NetworkTables listener thread and the robot loop without a lock - the
+// whole point of the sequence number is that the reader never ends up with half of one sample and half of another
+//
+// every sample the writer puts in here is built from one counter so a torn copy shows up as fields that don't agree
+
+class VisionSampleSlotTest {
+
+    private static final long kWrites = 2000000;
+
+
+
+    private static void writeSample(VisionSampleSlot slot, long n) {
+
+        slot.write(n % 2 == 0, n, n * 2.0, n * 3.0);
+    }
+
+
+
+    @Test
+    void readSeesEachNewSampleOnce() {
+
+        VisionSampleSlot slot = new VisionSampleSlot();
+
+        assertFalse(slot.read());                       // nothing written yet
+
+        writeSample(slot, 42);
+
+        assertTrue(slot.read());
+        assertFalse(slot.read());                       // same sample again isn't new
+
+        assertEquals(2,    slot.getSequence());
+        assertTrue(slot.hasTarget());
+        assertEquals(42.0, slot.getRangeMeters());
+        assertEquals(84.0, slot.getYawDegrees());
+        assertEquals(126.0, slot.getCaptureTimestamp());
+    }
+
+
+
+    @Test
+    void concurrentReaderNeverSeesATornSample() throws InterruptedException {
+
+        VisionSampleSlot slot = new VisionSampleSlot();
+
+        AtomicBoolean done = new AtomicBoolean(false);
+
+        Thread writer = new Thread(() -> {
+
+            for (long n = 1 ; n <= kWrites ; n++) {
+                writeSample(slot, n);
+            }
+
+            done.set(true);
+
+        }, "VisionSampleSlotTest writer");
+
+        writer.start();
+
+        long   lastSequence = 0;
+        double lastRange    = 0.0;
+
+        while ( ! done.get()) {
+
+            if ( ! slot.read()) {
+                continue;
+            }
+
+            long   n     = (long)slot.getRangeMeters();
+            double range = slot.getRangeMeters();
+
+            if (slot.getYawDegrees() != range * 2.0 || slot.getCaptureTimestamp() != range * 3.0 || slot.hasTarget() != (n % 2 == 0)) {
+                fail("torn sample: range " + range + " yaw " + slot.getYawDegrees() + " timestamp " + slot.getCaptureTimestamp()
+                     + " hasTarget " + slot.hasTarget());
+            }
+
+            assertTrue(slot.getSequence() > lastSequence, "sequence went backwards");
+            assertTrue(range > lastRange,                 "got an older sample after a newer one");
+
+            lastSequence = slot.getSequence();
+            lastRange    = range;
+        }
+
+        writer.join();
+
+        // one more read picks up the very last sample
+
+        slot.read();
+
+        assertEquals((double)kWrites, slot.getRangeMeters());
+        assertEquals(kWrites * 2,     slot.getSequence());
+    }
+}
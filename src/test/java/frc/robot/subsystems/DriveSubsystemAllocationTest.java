@@ -0,0 +1,77 @@
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+
+import frc.robot.StartupOrchestrator;
+
+
+
+// the drivetrain's periodic() runs every cycle for the whole match - with kUseAllocationFreeOdometry it shouldn't
+// create a single object, so the garbage collector never has a reason to stop the robot loop because of it
+//
+// the JVM keeps a running count of the bytes each thread has allocated - we read it before and after a few thousand
+// cycles and the difference has to be zero. the warm up first gets class loading, the first NetworkTables publish
+// and the JIT out of the way since those allocate once and never again
+
+class DriveSubsystemAllocationTest {
+
+    private static final int kWarmupCycles   = 20000;
+    private static final int kMeasuredCycles = 5000;
+
+    private static com.sun.management.ThreadMXBean m_threadBean;
+
+
+
+    @BeforeAll
+    static void setup() {
+
+        assertTrue(HAL.initialize(500, 0));
+
+        m_threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+        assertTrue(m_threadBean.isThreadAllocatedMemorySupported());
+
+        m_threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+
+
+    @Test
+    void periodicDoesNotAllocate() {
+
+        DriveSubsystem drive = new DriveSubsystem();
+
+        StartupOrchestrator.awaitCompletion();          // the controllers get configured on other threads
+
+        for (int i = 0 ; i < kWarmupCycles ; i++) {
+            drive.periodic();
+        }
+
+        long threadId = Thread.currentThread().getId();
+
+        // reading the counter can allocate a little itself - measure that with nothing in between and take it off
+
+        long overheadStart = m_threadBean.getThreadAllocatedBytes(threadId);
+        long overheadEnd   = m_threadBean.getThreadAllocatedBytes(threadId);
+
+        long start = m_threadBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0 ; i < kMeasuredCycles ; i++) {
+            drive.periodic();
+        }
+
+        long end = m_threadBean.getThreadAllocatedBytes(threadId);
+
+        long allocated = (end - start) - (overheadEnd - overheadStart);
+
+        assertEquals(0, allocated, "DriveSubsystem.periodic() allocated " + allocated + " bytes over " + kMeasuredCycles + " cycles");
+    }
+}
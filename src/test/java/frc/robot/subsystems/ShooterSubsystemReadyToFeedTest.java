@@ -0,0 +1,147 @@
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+
+import frc.robot.RobotStateFrame;
+import frc.robot.StartupOrchestrator;
+import frc.robot.Constants.ShooterConstants;
+
+
+
+// the shot skips its whole stabilize wait if the shooter says it's ready to feed the moment the new target goes in -
+// so right after setShooterRpm() it has to say no unless the flywheel really is there
+//
+// the flywheel runs in the sim the same way it does in the robot loop - frame, sensors, periodic(), physics - with
+// the clock paused and stepped one cycle at a time so every run comes out the same
+
+class ShooterSubsystemReadyToFeedTest {
+
+    private static final double kShotRpm   = 3000.0;
+    private static final int    kMaxCycles = 500;              // 10s - way more than any spin-up or spin-down takes
+
+    private static ShooterSubsystem m_shooter;
+
+
+
+    @BeforeAll
+    static void setup() {
+
+        assertTrue(HAL.initialize(500, 0));
+
+        SimHooks.pauseTiming();
+
+        m_shooter = new ShooterSubsystem();                     // only once - the controllers' CAN ids can't be reused
+
+        StartupOrchestrator.awaitCompletion();
+    }
+
+
+
+    @AfterAll
+    static void teardown() {
+
+        SimHooks.resumeTiming();                                // the other tests in this JVM expect a running clock
+    }
+
+
+
+    // every test starts from a stopped flywheel with no target
+
+    @BeforeEach
+    void stop() {
+
+        m_shooter.shooterMotorOff();
+
+        for (int i = 0 ; i < kMaxCycles && m_shooter.getShooterVelocity() > ShooterConstants.kShooterSpeedTolerance ; i++) {
+            cycle();
+        }
+
+        for (int i = 0 ; i < 10 ; i++) {                        // let the estimator settle on stopped
+            cycle();
+        }
+    }
+
+
+
+    private static void cycle() {
+
+        SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+
+        RobotStateFrame frame = RobotStateFrame.getInstance();
+
+        frame.beginFrame();
+
+        m_shooter.sampleSensors(frame);
+        m_shooter.periodic();
+        m_shooter.simulationPeriodic();
+    }
+
+
+
+    @Test
+    void shotFromRestIsNotReadyToFeed() {
+
+        // stopped with no target, the estimator says "no time at all" - that's for the old target
+
+        assertEquals(0.0, m_shooter.getPredictedTimeToSpeed());
+
+        m_shooter.setShooterRpm(kShotRpm);
+
+        assertFalse(m_shooter.isReadyToFeed(), "ready to feed in the same pass the target was set");
+
+        cycle();
+
+        assertFalse(m_shooter.isReadyToFeed(), "ready to feed one cycle into a spin-up from rest");
+
+        // and when it does say go, the flywheel is most of the way there
+
+        int cycles = 0;
+
+        while ( ! m_shooter.isReadyToFeed() && cycles++ < kMaxCycles) {
+            cycle();
+        }
+
+        assertTrue(m_shooter.isReadyToFeed(), "never got ready to feed");
+        assertTrue(m_shooter.getShooterVelocity() > kShotRpm * 0.5,
+                   "ready to feed at only " + m_shooter.getShooterVelocity() + " RPM");
+    }
+
+
+
+    @Test
+    void raisingAHeldTargetIsNotReadyToFeed() {
+
+        // ready mode holding the low battery RPM, right where it should be
+
+        double heldRpm = kShotRpm * ShooterConstants.kReadyLowBatteryRpmFraction;
+
+        m_shooter.setShooterRpm(heldRpm);
+
+        for (int i = 0 ; i < kMaxCycles && ! m_shooter.atShooterSpeed() ; i++) {
+            cycle();
+        }
+
+        for (int i = 0 ; i < 10 ; i++) {
+            cycle();
+        }
+
+        assertTrue(m_shooter.isReadyToFeed());
+
+        // then the shot asks for the full RPM
+
+        m_shooter.setShooterRpm(kShotRpm);
+
+        assertFalse(m_shooter.isReadyToFeed(), "ready to feed at the held RPM after the target went up");
+    }
+}